@@ -1,14 +1,85 @@
 package com.apitest.apitest.config;
 
+import io.netty.channel.ChannelOption;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ClientHttpRequest;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.client.HttpClientRequest;
+import reactor.netty.resources.ConnectionProvider;
 
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.function.Consumer;
+
+@Slf4j
 @Configuration
+@EnableConfigurationProperties(WebClientProperties.class)
 public class WebClientConfig {
-    
+
+    /**
+     * One pool for every integration, with limits enforced per remote host so a slow API cannot
+     * take connections from the others. Pool metrics (active, idle and pending connections,
+     * acquire time) are published as {@code reactor.netty.connection.provider.*}.
+     */
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider connectionProvider(WebClientProperties properties) {
+        WebClientProperties.Pool pool = properties.getPool();
+        ConnectionProvider.Builder builder = ConnectionProvider.builder("http-client")
+                .maxConnections(pool.getMaxConnections())
+                .pendingAcquireMaxCount(pool.getPendingAcquireMaxCount())
+                .pendingAcquireTimeout(pool.getPendingAcquireTimeout())
+                .maxIdleTime(pool.getMaxIdleTime())
+                .maxLifeTime(pool.getMaxLifeTime())
+                .evictInBackground(pool.getEvictInBackground())
+                .metrics(properties.isMetrics());
+
+        properties.getHosts().forEach((name, host) -> {
+            if (host.getHost() == null || host.getHost().isBlank()) {
+                log.warn("Ignoring HTTP client pool override '{}' without a host", name);
+                return;
+            }
+            builder.forRemoteHost(InetSocketAddress.createUnresolved(host.getHost(), host.getPort()), spec -> {
+                if (host.getMaxConnections() != null) spec.maxConnections(host.getMaxConnections());
+                if (host.getPendingAcquireMaxCount() != null) spec.pendingAcquireMaxCount(host.getPendingAcquireMaxCount());
+                if (host.getPendingAcquireTimeout() != null) spec.pendingAcquireTimeout(host.getPendingAcquireTimeout());
+                if (host.getMaxIdleTime() != null) spec.maxIdleTime(host.getMaxIdleTime());
+            });
+        });
+        return builder.build();
+    }
+
     @Bean
-    public WebClient webClient() {
-        return WebClient.builder().build();
+    public WebClient webClient(ConnectionProvider connectionProvider, WebClientProperties properties) {
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) properties.getConnectTimeout().toMillis())
+                .responseTimeout(properties.getResponseTimeout())
+                .compress(properties.isCompression())
+                .protocol(properties.isHttp2()
+                        ? new HttpProtocol[]{HttpProtocol.H2, HttpProtocol.HTTP11}
+                        : new HttpProtocol[]{HttpProtocol.HTTP11});
+        if (properties.isMetrics()) {
+            // Collapse URIs to keep tag cardinality bounded; the remote address tag still identifies the API
+            httpClient = httpClient.metrics(true, uri -> "/");
+        }
+        return WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+    }
+
+    /**
+     * Override the response timeout for one call, e.g.
+     * {@code webClient.get().uri(...).httpRequest(WebClientConfig.responseTimeout(Duration.ofMinutes(1)))}.
+     */
+    public static Consumer<ClientHttpRequest> responseTimeout(Duration timeout) {
+        return request -> {
+            HttpClientRequest nativeRequest = request.getNativeRequest();
+            nativeRequest.responseTimeout(timeout);
+        };
     }
 }
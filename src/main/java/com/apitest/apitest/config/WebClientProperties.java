@@ -0,0 +1,48 @@
+package com.apitest.apitest.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Tuning for the shared outbound HTTP client: connection pool, timeouts, protocol and metrics.
+ * Pool limits apply per remote host; entries under {@code hosts} override them for one host.
+ */
+@Data
+@ConfigurationProperties(prefix = "http.client")
+public class WebClientProperties {
+
+    private Duration connectTimeout = Duration.ofSeconds(5);
+    /** Default time to wait for response headers; a single call can override it. */
+    private Duration responseTimeout = Duration.ofSeconds(30);
+    private boolean compression = true;
+    /** Negotiate HTTP/2 over TLS (ALPN) and fall back to HTTP/1.1. */
+    private boolean http2 = true;
+    private boolean metrics = true;
+    private Pool pool = new Pool();
+    private Map<String, Host> hosts = new LinkedHashMap<>();
+
+    @Data
+    public static class Pool {
+        private int maxConnections = 100;
+        /** Requests allowed to wait for a connection before new ones fail fast. */
+        private int pendingAcquireMaxCount = 500;
+        private Duration pendingAcquireTimeout = Duration.ofSeconds(10);
+        private Duration maxIdleTime = Duration.ofSeconds(30);
+        private Duration maxLifeTime = Duration.ofMinutes(5);
+        private Duration evictInBackground = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class Host {
+        private String host;
+        private int port = 443;
+        private Integer maxConnections;
+        private Integer pendingAcquireMaxCount;
+        private Duration pendingAcquireTimeout;
+        private Duration maxIdleTime;
+    }
+}
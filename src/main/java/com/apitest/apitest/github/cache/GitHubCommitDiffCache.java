@@ -0,0 +1,119 @@
+package com.apitest.apitest.github.cache;
+
+import com.apitest.apitest.github.model.entity.GitHubCommitDiff;
+import com.apitest.apitest.github.repository.GitHubCommitDiffRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Two-tier cache of added lines per (owner, repo, commit SHA, path): a weight-bounded in-memory LRU
+ * in front of the github_commit_diffs collection. Concurrent misses for the same key share one load.
+ * Only full commit SHAs are cached, since branch names and short SHAs are not immutable.
+ */
+@Slf4j
+@Component
+public class GitHubCommitDiffCache {
+
+    private static final Pattern FULL_SHA = Pattern.compile("[0-9a-f]{40}|[0-9a-f]{64}");
+    private static final long LINE_OVERHEAD = 16;
+
+    private final GitHubCommitDiffRepository diffRepository;
+    private final long maxWeight;
+    private final int maxPersistedLines;
+
+    private final LinkedHashMap<String, List<String>> memory = new LinkedHashMap<>(256, 0.75f, true);
+    private long weight;
+    private final Map<String, Mono<List<String>>> inFlight = new ConcurrentHashMap<>();
+
+    public GitHubCommitDiffCache(GitHubCommitDiffRepository diffRepository,
+                                 @Value("${github.diff-cache.max-memory-chars:16000000}") long maxWeight,
+                                 @Value("${github.diff-cache.max-persisted-lines:100000}") int maxPersistedLines) {
+        this.diffRepository = diffRepository;
+        this.maxWeight = maxWeight;
+        this.maxPersistedLines = maxPersistedLines;
+    }
+
+    public Mono<List<String>> get(String owner, String repo, String sha, String path, Supplier<Mono<List<String>>> loader) {
+        if (sha == null || !FULL_SHA.matcher(sha).matches()) {
+            return loader.get();
+        }
+        String key = owner + "/" + repo + "@" + sha + ":" + path;
+        List<String> cached = fromMemory(key);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        return inFlight.computeIfAbsent(key, k -> diffRepository.findById(k)
+                .map(GitHubCommitDiff::getAddedLines)
+                .switchIfEmpty(Mono.defer(() -> loader.get()
+                        .flatMap(lines -> persist(k, owner, repo, sha, path, lines))))
+                .doOnNext(lines -> toMemory(k, lines))
+                .doFinally(signal -> inFlight.remove(k))
+                .cache());
+    }
+
+    private Mono<List<String>> persist(String key, String owner, String repo, String sha, String path, List<String> lines) {
+        if (lines.size() > maxPersistedLines) {
+            return Mono.just(lines);
+        }
+        GitHubCommitDiff diff = GitHubCommitDiff.builder()
+                .id(key)
+                .owner(owner)
+                .repo(repo)
+                .sha(sha)
+                .path(path)
+                .addedLines(lines)
+                .fetchedAt(Instant.now())
+                .build();
+        // A failed write only costs a refetch later, so it must not fail the lookup
+        return diffRepository.save(diff)
+                .thenReturn(lines)
+                .onErrorResume(e -> {
+                    log.warn("Failed to persist commit diff {}: {}", key, e.getMessage());
+                    return Mono.just(lines);
+                });
+    }
+
+    private List<String> fromMemory(String key) {
+        synchronized (memory) {
+            return memory.get(key);
+        }
+    }
+
+    private void toMemory(String key, List<String> lines) {
+        long entryWeight = weigh(lines);
+        if (entryWeight > maxWeight) {
+            return;
+        }
+        List<String> copy = List.copyOf(lines);
+        synchronized (memory) {
+            List<String> previous = memory.put(key, copy);
+            if (previous != null) {
+                weight -= weigh(previous);
+            }
+            weight += entryWeight;
+            var it = memory.entrySet().iterator();
+            while (weight > maxWeight && it.hasNext()) {
+                weight -= weigh(it.next().getValue());
+                it.remove();
+            }
+        }
+    }
+
+    private static long weigh(List<String> lines) {
+        long total = 0;
+        for (String line : lines) {
+            total += line.length() + LINE_OVERHEAD;
+        }
+        return total;
+    }
+}
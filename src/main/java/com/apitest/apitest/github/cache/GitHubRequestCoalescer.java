@@ -0,0 +1,44 @@
+package com.apitest.apitest.github.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight for outbound GitHub GETs: while a call for a token and URL is in flight, identical
+ * calls subscribe to the same result instead of issuing another request.
+ */
+@Component
+public class GitHubRequestCoalescer {
+
+    private final Map<String, Mono<?>> inFlight = new ConcurrentHashMap<>();
+    private final Counter coalescedCounter;
+
+    public GitHubRequestCoalescer(MeterRegistry meterRegistry) {
+        this.coalescedCounter = Counter.builder("github.requests.coalesced")
+                .description("GitHub calls served by attaching to an identical in-flight call")
+                .register(meterRegistry);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> Mono<T> coalesce(String token, String url, Supplier<Mono<T>> call) {
+        String key = token + '\n' + url;
+        return Mono.defer(() -> {
+            boolean[] created = new boolean[1];
+            Mono<T> shared = (Mono<T>) inFlight.computeIfAbsent(key, k -> {
+                created[0] = true;
+                // share() keeps one upstream subscription for all callers and cancels it only when all of them cancel
+                return Mono.defer(call).doFinally(signal -> inFlight.remove(k)).share();
+            });
+            if (!created[0]) {
+                coalescedCounter.increment();
+            }
+            return shared;
+        });
+    }
+}
@@ -0,0 +1,55 @@
+package com.apitest.apitest.github.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of decoded GitHub GET responses and their ETags, keyed by token and URL.
+ * Used to send conditional requests; GitHub does not count 304 responses against the rate limit.
+ */
+@Component
+public class GitHubResponseCache {
+
+    private final int maxEntries;
+    private final Map<String, Entry> entries;
+
+    public GitHubResponseCache(@Value("${github.cache.max-entries:10000}") int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > GitHubResponseCache.this.maxEntries;
+            }
+        };
+    }
+
+    public Entry get(String token, String url) {
+        synchronized (entries) {
+            return entries.get(key(token, url));
+        }
+    }
+
+    public void put(String token, String url, String etag, Object body) {
+        if (etag == null || body == null || maxEntries <= 0) {
+            return;
+        }
+        synchronized (entries) {
+            entries.put(key(token, url), new Entry(etag, body));
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private static String key(String token, String url) {
+        return token + '\n' + url;
+    }
+
+    public record Entry(String etag, Object body) {}
+}
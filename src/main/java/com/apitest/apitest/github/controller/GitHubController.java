@@ -1,26 +1,38 @@
 package com.apitest.apitest.github.controller;
 
+import com.apitest.apitest.github.index.GitHubWatchIndex;
+import com.apitest.apitest.github.model.dto.GitHubChangeEvent;
+import com.apitest.apitest.github.model.dto.GitHubPushEvent;
 import com.apitest.apitest.github.model.dto.GitHubWatchRequest;
 import com.apitest.apitest.github.model.dto.GitHubRepository;
 import com.apitest.apitest.github.model.dto.GitHubBranch;
 import com.apitest.apitest.github.model.entity.GitHubFileWatch;
 import com.apitest.apitest.github.repository.GitHubFileWatchRepository;
+import com.apitest.apitest.github.security.GitHubWebhookSignatureVerifier;
+import com.apitest.apitest.github.service.GitHubChangeEventService;
 import com.apitest.apitest.github.service.GitHubService;
+import com.apitest.apitest.github.service.GitHubWebhookQueueService;
+import com.apitest.apitest.github.service.GitHubWebhookService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
+import java.time.Duration;
 import java.util.Map;
 import java.util.UUID;
 
@@ -33,12 +45,29 @@ import java.util.UUID;
 public class GitHubController {
 
     private final GitHubService gitHubService;
-    private final ObjectMapper objectMapper;
+    private final GitHubWebhookService webhookService;
+    private final GitHubWebhookQueueService webhookQueueService;
     private final GitHubFileWatchRepository fileWatchRepository;
+    private final GitHubWebhookSignatureVerifier signatureVerifier;
+    private final GitHubWatchIndex watchIndex;
+    private final GitHubChangeEventService changeEventService;
 
     @Value("${github.webhook.secret:}")
     private String webhookSecret;
 
+    /**
+     * inline: process push payloads on the request thread; queue: persist and acknowledge with 202.
+     */
+    @Value("${github.webhook.ingest-mode:inline}")
+    private String ingestMode;
+
+    @Value("${github.events.heartbeat-ms:15000}")
+    private long eventsHeartbeatMs;
+
+    /** Lifetime of one SSE connection in ms; 0 or less keeps it open until the client leaves. */
+    @Value("${github.events.timeout-ms:3600000}")
+    private long eventsTimeoutMs;
+
     @GetMapping("/login")
     @Operation(summary = "Redirect to GitHub for OAuth2 login copy url and paste in browser")
     public ResponseEntity<Void> login() {
@@ -136,6 +165,58 @@ public class GitHubController {
                 });
     }
 
+    @GetMapping(value = "/repositories/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Stream the authenticated user's repositories as NDJSON, following all pages")
+    public ResponseEntity<Flux<Object>> streamRepositories(
+            @RequestHeader(value = "Authorization", required = false) String authHeader) {
+
+        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+            return ResponseEntity
+                    .status(HttpStatus.UNAUTHORIZED)
+                    .body(Flux.just(Map.of("error", "Missing or invalid Authorization header")));
+        }
+
+        String authToken = authHeader.substring(7);
+
+        Flux<Object> repos = gitHubService.getUserRepositories(authToken)
+                .cast(Object.class)
+                .onErrorResume(e -> {
+                    log.error("Error streaming repositories: {}", e.getMessage());
+                    return Flux.just(Map.of(
+                            "error", "Failed to fetch repositories",
+                            "details", e.getMessage()
+                    ));
+                });
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(repos);
+    }
+
+    @GetMapping(value = "/repositories/{owner}/{repo}/branches/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Stream branches for a specific repository as NDJSON, following all pages")
+    public ResponseEntity<Flux<Object>> streamBranches(
+            @RequestHeader(value = "Authorization", required = false) String authHeader,
+            @PathVariable String owner,
+            @PathVariable String repo) {
+
+        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+            return ResponseEntity
+                    .status(HttpStatus.UNAUTHORIZED)
+                    .body(Flux.just(Map.of("error", "Missing or invalid Authorization header")));
+        }
+
+        String authToken = authHeader.substring(7);
+
+        Flux<Object> branches = gitHubService.getRepositoryBranches(authToken, owner, repo)
+                .cast(Object.class)
+                .onErrorResume(e -> {
+                    log.error("Error streaming branches for {}/{}: {}", owner, repo, e.getMessage());
+                    return Flux.just(Map.of(
+                            "error", "Failed to fetch branches",
+                            "details", e.getMessage()
+                    ));
+                });
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(branches);
+    }
+
     @PostMapping("/webhooks")
     @Operation(summary = "Create a GitHub repository webhook for push and pull_request events")
     public Mono<ResponseEntity<Object>> createWebhook(
@@ -202,17 +283,45 @@ public class GitHubController {
                 .build();
 
         return fileWatchRepository.save(watch)
+                .doOnNext(watchIndex::upsert)
                 .map(saved -> ResponseEntity.status(HttpStatus.CREATED).body((Object) saved))
                 .onErrorResume(e -> Mono.just(ResponseEntity.status(HttpStatus.BAD_REQUEST)
                         .body(Map.of("error", "Failed to save watch", "details", e.getMessage()))));
     }
 
+    @GetMapping(value = "/events/{userId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Server-Sent Events stream of changes to the user's watched files")
+    public SseEmitter streamChangeEvents(@PathVariable String userId) {
+        // Own timeout so the stream outlives the app-wide async timeout; clients reconnect when it ends
+        SseEmitter emitter = new SseEmitter(eventsTimeoutMs);
+        Flux<SseEmitter.SseEventBuilder> changes = changeEventService.subscribe(userId)
+                .map(change -> SseEmitter.event()
+                        .id(change.getSha())
+                        .name("change")
+                        .data(change));
+        // Comment frames keep idle connections open through proxies and surface dead clients
+        Flux<SseEmitter.SseEventBuilder> heartbeats = Flux.interval(Duration.ofMillis(eventsHeartbeatMs))
+                .map(tick -> SseEmitter.event().comment("keep-alive"));
+        Disposable subscription = Flux.merge(changes, heartbeats)
+                .subscribe(event -> {
+                    try {
+                        emitter.send(event);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, emitter::completeWithError, emitter::complete);
+        emitter.onTimeout(emitter::complete);
+        emitter.onCompletion(subscription::dispose);
+        return emitter;
+    }
+
     @PostMapping("/webhook")
     @Operation(summary = "GitHub webhook receiver (push events)")
     public Mono<ResponseEntity<Object>> receiveWebhook(
             @RequestHeader(name = "X-Hub-Signature-256", required = false) String signature,
             @RequestHeader(name = "X-GitHub-Event", required = false) String event,
-            @RequestBody Mono<String> body) {
+            @RequestHeader(name = "X-GitHub-Delivery", required = false) String deliveryId,
+            @RequestBody byte[] payload) {
 
         if (webhookSecret == null || webhookSecret.isBlank()) {
             log.warn("Webhook secret is not configured; rejecting webhook");
@@ -225,78 +334,48 @@ public class GitHubController {
                     .body(Map.of("error", "Missing or invalid signature")));
         }
 
-        return body.flatMap(payload -> {
-            if (!isValidSignature(payload, signature.substring(7), webhookSecret)) {
-                return Mono.just(ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                        .body(Map.of("error", "Signature verification failed")));
-            }
-
-            if (event == null || !event.equals("push")) {
-                return Mono.just(ResponseEntity.ok(Map.of("message", "Event ignored")));
-            }
-
-            try {
-                JsonNode root = objectMapper.readTree(payload);
-                String ref = root.path("ref").asText("");
-                String repo = root.path("repository").path("name").asText("");
-                String owner = root.path("repository").path("owner").path("login").asText("");
-
-                if (ref.isEmpty() || repo.isEmpty() || owner.isEmpty()) {
-                    return Mono.just(ResponseEntity.ok(Map.of("message", "Missing key fields")));
-                }
-
-                for (JsonNode commit : root.path("commits")) {
-                    String sha = commit.path("id").asText("");
-                    String authorLogin = commit.path("author").path("username").asText(commit.path("author").path("name").asText(""));
-                    String authorEmail = commit.path("author").path("email").asText("");
-                    JsonNode added = commit.path("added");
-                    JsonNode modified = commit.path("modified");
-
-                    log.info("push on {} {}:{} sha={} by {} <{}> added={} modified={}", ref, owner, repo, sha, authorLogin, authorEmail, added, modified);
-                }
-
-                return Mono.just(ResponseEntity.ok(Map.of(
-                        "message", "Processed",
-                        "repository", owner + "/" + repo,
-                        "ref", ref
-                )));
-            } catch (Exception e) {
-                log.error("Webhook processing failed: {}", e.getMessage());
-                return Mono.just(ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                        .body(Map.of("error", "Invalid payload", "details", e.getMessage())));
-            }
-        });
-    }
+        if (!signatureVerifier.isValid(payload, signature, webhookSecret)) {
+            return Mono.just(ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(Map.of("error", "Signature verification failed")));
+        }
+
+        if ("queue".equalsIgnoreCase(ingestMode)) {
+            String id = deliveryId != null && !deliveryId.isBlank() ? deliveryId : UUID.randomUUID().toString();
+            return webhookQueueService.enqueue(id, event, payload)
+                    .map(queued -> ResponseEntity.status(HttpStatus.ACCEPTED)
+                            .body((Object) Map.of(
+                                    "message", queued ? "Queued" : "Duplicate delivery",
+                                    "deliveryId", id
+                            )))
+                    .onErrorResume(e -> {
+                        log.error("Failed to queue webhook delivery {}: {}", id, e.getMessage());
+                        return Mono.just(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                                .body(Map.of("error", "Failed to queue delivery", "details", e.getMessage())));
+                    });
+        }
+
+        if (event == null || !event.equals("push")) {
+            return Mono.just(ResponseEntity.ok(Map.of("message", "Event ignored")));
+        }
 
-    private static boolean isValidSignature(String payload, String signatureHex, String secret) {
+        GitHubPushEvent push;
         try {
-            javax.crypto.Mac mac = javax.crypto.Mac.getInstance("HmacSHA256");
-            mac.init(new javax.crypto.spec.SecretKeySpec(secret.getBytes(java.nio.charset.StandardCharsets.UTF_8), "HmacSHA256"));
-            byte[] expected = mac.doFinal(payload.getBytes(java.nio.charset.StandardCharsets.UTF_8));
-            String expectedHex = bytesToHex(expected);
-            return constantTimeEquals(expectedHex, signatureHex);
+            push = webhookService.parsePush(payload);
         } catch (Exception e) {
-            return false;
+            log.error("Webhook processing failed: {}", e.getMessage());
+            return Mono.just(ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("error", "Invalid payload", "details", e.getMessage())));
         }
-    }
 
-    private static String bytesToHex(byte[] bytes) {
-        char[] HEX = "0123456789abcdef".toCharArray();
-        char[] out = new char[bytes.length * 2];
-        for (int i = 0; i < bytes.length; i++) {
-            int v = bytes[i] & 0xFF;
-            out[i * 2] = HEX[v >>> 4];
-            out[i * 2 + 1] = HEX[v & 0x0F];
+        if (!push.hasKeyFields()) {
+            return Mono.just(ResponseEntity.ok(Map.of("message", "Missing key fields")));
         }
-        return new String(out);
-    }
 
-    private static boolean constantTimeEquals(String a, String b) {
-        if (a == null || b == null || a.length() != b.length()) return false;
-        int r = 0;
-        for (int i = 0; i < a.length(); i++) {
-            r |= a.charAt(i) ^ b.charAt(i);
-        }
-        return r == 0;
+        return webhookService.handlePush(push)
+                .thenReturn(ResponseEntity.ok((Object) Map.of(
+                        "message", "Processed",
+                        "repository", push.getOwner() + "/" + push.getRepo(),
+                        "ref", push.getRef()
+                )));
     }
 }
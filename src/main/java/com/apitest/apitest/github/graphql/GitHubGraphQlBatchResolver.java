@@ -0,0 +1,148 @@
+package com.apitest.apitest.github.graphql;
+
+import com.apitest.apitest.github.model.dto.GitHubPathRef;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Resolves the latest commit SHA for many paths with one GitHub GraphQL query per chunk, using an
+ * aliased {@code history(path:, first: 1)} field per item. Items of a chunk that fails as a whole,
+ * or whose alias comes back with an error, are resolved one by one through the REST fallback.
+ */
+@Slf4j
+public class GitHubGraphQlBatchResolver {
+
+    private static final int FALLBACK_CONCURRENCY = 4;
+
+    private final WebClient webClient;
+    private final ObjectMapper objectMapper;
+    private final String graphQlUrl;
+    private final int batchSize;
+
+    public GitHubGraphQlBatchResolver(WebClient webClient, ObjectMapper objectMapper, String graphQlUrl, int batchSize) {
+        this.webClient = webClient;
+        this.objectMapper = objectMapper;
+        this.graphQlUrl = graphQlUrl;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * @param restFallback single-item lookup used when GraphQL cannot answer for an item
+     * @return SHA per ref; refs without any commit for the path are absent
+     */
+    public Mono<Map<GitHubPathRef, String>> resolve(String token, List<GitHubPathRef> refs,
+                                                    Function<GitHubPathRef, Mono<String>> restFallback) {
+        List<List<GitHubPathRef>> chunks = new ArrayList<>();
+        for (int i = 0; i < refs.size(); i += batchSize) {
+            chunks.add(refs.subList(i, Math.min(refs.size(), i + batchSize)));
+        }
+        return Flux.fromIterable(chunks)
+                .concatMap(chunk -> resolveChunk(token, chunk, restFallback))
+                .collect(HashMap::new, Map::putAll);
+    }
+
+    private Mono<Map<GitHubPathRef, String>> resolveChunk(String token, List<GitHubPathRef> chunk,
+                                                          Function<GitHubPathRef, Mono<String>> restFallback) {
+        String query;
+        try {
+            query = buildQuery(chunk);
+        } catch (JsonProcessingException e) {
+            return fallback(chunk, restFallback);
+        }
+        return webClient.post()
+                .uri(graphQlUrl)
+                .header(HttpHeaders.AUTHORIZATION, "token " + token)
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("query", query))
+                .retrieve()
+                .bodyToMono(JsonNode.class)
+                .flatMap(response -> {
+                    JsonNode data = response.path("data");
+                    if (!data.isObject()) {
+                        log.warn("GraphQL batch of {} returned no data: {}", chunk.size(), response.path("errors"));
+                        return fallback(chunk, restFallback);
+                    }
+                    Set<String> failedAliases = new HashSet<>();
+                    for (JsonNode error : response.path("errors")) {
+                        JsonNode path = error.path("path");
+                        if (path.isArray() && !path.isEmpty()) {
+                            failedAliases.add(path.get(0).asText());
+                        }
+                    }
+
+                    Map<GitHubPathRef, String> resolved = new HashMap<>();
+                    List<GitHubPathRef> retry = new ArrayList<>();
+                    for (int i = 0; i < chunk.size(); i++) {
+                        String alias = alias(i);
+                        if (failedAliases.contains(alias)) {
+                            retry.add(chunk.get(i));
+                            continue;
+                        }
+                        JsonNode oid = data.path(alias).path("object").path("history").path("nodes").path(0).path("oid");
+                        if (oid.isTextual()) {
+                            resolved.put(chunk.get(i), oid.asText());
+                        }
+                    }
+                    if (retry.isEmpty()) {
+                        return Mono.just(resolved);
+                    }
+                    return fallback(retry, restFallback).map(more -> {
+                        resolved.putAll(more);
+                        return resolved;
+                    });
+                })
+                .onErrorResume(e -> {
+                    log.warn("GraphQL batch of {} failed, falling back to REST: {}", chunk.size(), e.getMessage());
+                    return fallback(chunk, restFallback);
+                });
+    }
+
+    private Mono<Map<GitHubPathRef, String>> fallback(List<GitHubPathRef> refs,
+                                                      Function<GitHubPathRef, Mono<String>> restFallback) {
+        return Flux.fromIterable(refs)
+                .flatMap(ref -> restFallback.apply(ref)
+                        .map(sha -> Map.entry(ref, sha))
+                        .onErrorResume(e -> {
+                            log.debug("REST fallback failed for {}/{}:{}: {}", ref.getOwner(), ref.getRepo(),
+                                    ref.getPath(), e.getMessage());
+                            return Mono.empty();
+                        }), FALLBACK_CONCURRENCY)
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue);
+    }
+
+    private String buildQuery(List<GitHubPathRef> chunk) throws JsonProcessingException {
+        StringBuilder query = new StringBuilder(128 + chunk.size() * 160).append("query {");
+        for (int i = 0; i < chunk.size(); i++) {
+            GitHubPathRef ref = chunk.get(i);
+            // JSON string literals are valid GraphQL string literals, so Jackson does the escaping
+            query.append(' ').append(alias(i))
+                    .append(": repository(owner: ").append(objectMapper.writeValueAsString(ref.getOwner()))
+                    .append(", name: ").append(objectMapper.writeValueAsString(ref.getRepo()))
+                    .append(") { object(expression: ").append(objectMapper.writeValueAsString(ref.getBranch()))
+                    .append(") { ... on Commit { history(first: 1, path: ")
+                    .append(objectMapper.writeValueAsString(ref.getPath()))
+                    .append(") { nodes { oid } } } } }");
+        }
+        return query.append(" }").toString();
+    }
+
+    private static String alias(int index) {
+        return "q" + index;
+    }
+}
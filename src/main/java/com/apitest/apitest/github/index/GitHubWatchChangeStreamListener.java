@@ -0,0 +1,180 @@
+package com.apitest.apitest.github.index;
+
+import com.apitest.apitest.github.model.entity.GitHubChangeStreamOffset;
+import com.apitest.apitest.github.model.entity.GitHubFileWatch;
+import com.apitest.apitest.github.repository.GitHubFileWatchRepository;
+import com.mongodb.MongoCommandException;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Follows the github_file_watches collection through a MongoDB change stream and pushes inserts,
+ * updates and deletes into every {@link GitHubWatchListener}. The resume token is checkpointed so a
+ * restart continues from the last applied event. Requires a replica set (a single node is enough).
+ */
+@Slf4j
+@Component
+public class GitHubWatchChangeStreamListener {
+
+    private static final String COLLECTION = "github_file_watches";
+    /** ChangeStreamHistoryLost / InvalidResumeToken: the token is no longer usable. */
+    private static final Set<Integer> UNUSABLE_TOKEN_CODES = Set.of(260, 280, 286);
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final GitHubFileWatchRepository fileWatchRepository;
+    private final List<GitHubWatchListener> listeners;
+
+    private final AtomicReference<BsonValue> latestToken = new AtomicReference<>();
+    private volatile BsonValue checkpointedToken;
+    private volatile Disposable subscription;
+
+    @Value("${github.watch.change-stream.enabled:false}")
+    private boolean enabled;
+
+    public GitHubWatchChangeStreamListener(ReactiveMongoTemplate mongoTemplate,
+                                           GitHubFileWatchRepository fileWatchRepository,
+                                           List<GitHubWatchListener> listeners) {
+        this.mongoTemplate = mongoTemplate;
+        this.fileWatchRepository = fileWatchRepository;
+        this.listeners = listeners;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        subscription = loadCheckpoint()
+                .map(token -> new Start(token, null))
+                .defaultIfEmpty(new Start(null, Instant.now()))
+                // The snapshot is taken after the stream position is fixed, so nothing in between is missed;
+                // replaying events already in the snapshot is harmless because they are applied as upserts.
+                .flatMapMany(start -> reloadAll().thenMany(stream(start)))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                        .maxBackoff(Duration.ofSeconds(30))
+                        .doBeforeRetry(signal -> log.warn("Watch change stream failed, restarting: {}",
+                                signal.failure().getMessage())))
+                .subscribe();
+        log.info("Following {} through a change stream", COLLECTION);
+    }
+
+    private Flux<ChangeStreamEvent<GitHubFileWatch>> stream(Start start) {
+        return Flux.defer(() -> {
+            BsonValue token = latestToken.get() != null ? latestToken.get() : start.token();
+            ChangeStreamOptions.ChangeStreamOptionsBuilder options = ChangeStreamOptions.builder()
+                    .fullDocumentLookup(FullDocument.UPDATE_LOOKUP);
+            if (token != null) {
+                options.resumeAfter(token);
+            } else {
+                options.resumeAt(start.at());
+            }
+            return mongoTemplate.changeStream(COLLECTION, options.build(), GitHubFileWatch.class)
+                    .doOnNext(this::apply)
+                    .onErrorResume(this::isUnusableToken, e -> {
+                        log.warn("Change stream resume token is no longer valid; reloading all watches");
+                        latestToken.set(null);
+                        return reloadAll().thenMany(stream(new Start(null, Instant.now())));
+                    });
+        });
+    }
+
+    private void apply(ChangeStreamEvent<GitHubFileWatch> event) {
+        OperationType type = event.getOperationType();
+        if (type == OperationType.INSERT || type == OperationType.UPDATE || type == OperationType.REPLACE) {
+            GitHubFileWatch watch = event.getBody();
+            if (watch != null) {
+                listeners.forEach(listener -> listener.onUpsert(watch));
+            }
+        } else if (type == OperationType.DELETE) {
+            String id = documentId(event);
+            if (id != null) {
+                listeners.forEach(listener -> listener.onRemove(id));
+            }
+        }
+        if (event.getResumeToken() != null) {
+            latestToken.set(event.getResumeToken());
+        }
+    }
+
+    private Mono<Void> reloadAll() {
+        return fileWatchRepository.findByActiveTrue()
+                .collectList()
+                .doOnNext(watches -> listeners.forEach(listener -> listener.onReload(watches)))
+                .then();
+    }
+
+    /**
+     * Persist the latest applied token at most once per interval rather than once per event.
+     */
+    @Scheduled(fixedDelayString = "${github.watch.change-stream.checkpoint-interval-ms:1000}")
+    public void checkpoint() {
+        BsonValue token = latestToken.get();
+        if (!enabled || token == null || token.equals(checkpointedToken)) {
+            return;
+        }
+        GitHubChangeStreamOffset offset = GitHubChangeStreamOffset.builder()
+                .id(COLLECTION)
+                .resumeToken(token.asDocument().toJson())
+                .updatedAt(Instant.now())
+                .build();
+        mongoTemplate.save(offset).subscribe(
+                saved -> checkpointedToken = token,
+                e -> log.warn("Failed to checkpoint change stream token: {}", e.getMessage()));
+    }
+
+    @PreDestroy
+    public void stop() {
+        Disposable current = subscription;
+        if (current != null) {
+            current.dispose();
+        }
+    }
+
+    private Mono<BsonValue> loadCheckpoint() {
+        return mongoTemplate.findById(COLLECTION, GitHubChangeStreamOffset.class)
+                .filter(offset -> offset.getResumeToken() != null)
+                .map(offset -> (BsonValue) BsonDocument.parse(offset.getResumeToken()));
+    }
+
+    private boolean isUnusableToken(Throwable e) {
+        return e instanceof MongoCommandException mce && UNUSABLE_TOKEN_CODES.contains(mce.getErrorCode())
+                || e.getCause() instanceof MongoCommandException cause && UNUSABLE_TOKEN_CODES.contains(cause.getErrorCode());
+    }
+
+    private static String documentId(ChangeStreamEvent<GitHubFileWatch> event) {
+        if (event.getRaw() == null || event.getRaw().getDocumentKey() == null) {
+            return null;
+        }
+        BsonValue id = event.getRaw().getDocumentKey().get("_id");
+        if (id == null) {
+            return null;
+        }
+        return id.isObjectId() ? id.asObjectId().getValue().toHexString()
+                : id.isString() ? id.asString().getValue()
+                : id.toString();
+    }
+
+    private record Start(BsonValue token, Instant at) {}
+}
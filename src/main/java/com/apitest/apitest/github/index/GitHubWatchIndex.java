@@ -0,0 +1,383 @@
+package com.apitest.apitest.github.index;
+
+import com.apitest.apitest.github.model.entity.GitHubFileWatch;
+import com.apitest.apitest.github.repository.GitHubFileWatchRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory index of active file watches per (owner, repo, branch), used to match the paths of a
+ * push against watches without touching Mongo. Within a branch, a watch path is one of:
+ * <ul>
+ *     <li>an exact file path, looked up in a hash map;</li>
+ *     <li>a directory prefix ({@code src/} or {@code src/**}), stored in a segment trie;</li>
+ *     <li>a glob ({@code *}, {@code **}, {@code ?}, classes such as {@code [0-9]} or {@code [!._]}, and
+ *     alternation such as {@code *.{js,ts}}), compiled once to a regex.</li>
+ * </ul>
+ * Each branch holds an immutable snapshot that is rebuilt on change, so matching never locks.
+ */
+@Slf4j
+@Component
+public class GitHubWatchIndex implements GitHubWatchListener {
+
+    private final GitHubFileWatchRepository fileWatchRepository;
+
+    // Writers are serialised on this; readers only touch the immutable per-branch snapshots
+    private final Map<String, GitHubFileWatch> watchesById = new HashMap<>();
+    private final Map<BranchKey, Map<String, GitHubFileWatch>> members = new HashMap<>();
+    private final Map<BranchKey, BranchIndex> branches = new ConcurrentHashMap<>();
+
+    public GitHubWatchIndex(GitHubFileWatchRepository fileWatchRepository) {
+        this.fileWatchRepository = fileWatchRepository;
+    }
+
+    /** When the change stream is on it performs the initial load itself and keeps the index in sync. */
+    @Value("${github.watch.change-stream.enabled:false}")
+    private boolean changeStreamEnabled;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        if (changeStreamEnabled) {
+            return;
+        }
+        fileWatchRepository.findByActiveTrue()
+                .collectList()
+                .subscribe(this::replaceAll,
+                        e -> log.error("Failed to load file watches into the path index: {}", e.getMessage(), e));
+    }
+
+    @Override
+    public void onReload(Collection<GitHubFileWatch> watches) {
+        replaceAll(watches);
+    }
+
+    @Override
+    public void onUpsert(GitHubFileWatch watch) {
+        upsert(watch);
+    }
+
+    @Override
+    public void onRemove(String watchId) {
+        remove(watchId);
+    }
+
+    public synchronized void replaceAll(Collection<GitHubFileWatch> watches) {
+        watchesById.clear();
+        members.clear();
+        for (GitHubFileWatch watch : watches) {
+            if (isIndexable(watch)) {
+                watchesById.put(watch.getId(), watch);
+                members.computeIfAbsent(BranchKey.of(watch), k -> new HashMap<>()).put(watch.getId(), watch);
+            }
+        }
+        branches.keySet().retainAll(members.keySet());
+        members.forEach((key, watchMap) -> branches.put(key, BranchIndex.build(watchMap.values())));
+        log.info("Indexed {} file watches across {} branches", watchesById.size(), branches.size());
+    }
+
+    /**
+     * Add or replace a watch. Inactive watches are removed from the index.
+     */
+    public synchronized void upsert(GitHubFileWatch watch) {
+        if (watch == null || watch.getId() == null) {
+            return;
+        }
+        remove(watch.getId());
+        if (isIndexable(watch)) {
+            BranchKey key = BranchKey.of(watch);
+            watchesById.put(watch.getId(), watch);
+            members.computeIfAbsent(key, k -> new HashMap<>()).put(watch.getId(), watch);
+            rebuild(key);
+        }
+    }
+
+    public synchronized void remove(String watchId) {
+        GitHubFileWatch previous = watchesById.remove(watchId);
+        if (previous != null) {
+            BranchKey key = BranchKey.of(previous);
+            Map<String, GitHubFileWatch> watchMap = members.get(key);
+            if (watchMap != null) {
+                watchMap.remove(watchId);
+                if (watchMap.isEmpty()) {
+                    members.remove(key);
+                }
+            }
+            rebuild(key);
+        }
+    }
+
+    /**
+     * Watches on the branch whose path matches any of the changed paths.
+     *
+     * @param ref full ref such as {@code refs/heads/main}
+     */
+    public Set<GitHubFileWatch> match(String owner, String repo, String ref, Collection<String> changedPaths) {
+        BranchIndex index = branches.get(new BranchKey(normalize(owner), normalize(repo), ref));
+        if (index == null || changedPaths.isEmpty()) {
+            return Set.of();
+        }
+        Set<GitHubFileWatch> matches = new LinkedHashSet<>();
+        for (String path : changedPaths) {
+            index.collect(path, matches);
+        }
+        return matches;
+    }
+
+    public synchronized int size() {
+        return watchesById.size();
+    }
+
+    private void rebuild(BranchKey key) {
+        Map<String, GitHubFileWatch> watchMap = members.get(key);
+        if (watchMap == null) {
+            branches.remove(key);
+        } else {
+            branches.put(key, BranchIndex.build(watchMap.values()));
+        }
+    }
+
+    private static boolean isIndexable(GitHubFileWatch watch) {
+        return !Boolean.FALSE.equals(watch.getActive())
+                && watch.getOwner() != null && watch.getRepo() != null
+                && watch.getBranch() != null && watch.getPath() != null;
+    }
+
+    private static String normalize(String name) {
+        // GitHub owner and repository names are case-insensitive
+        return name == null ? "" : name.toLowerCase(Locale.ROOT);
+    }
+
+    private record BranchKey(String owner, String repo, String ref) {
+        static BranchKey of(GitHubFileWatch watch) {
+            String branch = watch.getBranch();
+            String ref = branch.startsWith("refs/") ? branch : "refs/heads/" + branch;
+            return new BranchKey(normalize(watch.getOwner()), normalize(watch.getRepo()), ref);
+        }
+    }
+
+    /**
+     * Immutable matcher for the watches of one branch.
+     */
+    private static final class BranchIndex {
+        private final Map<String, List<GitHubFileWatch>> exact;
+        private final TrieNode prefixes;
+        private final List<GlobWatch> globs;
+
+        private BranchIndex(Map<String, List<GitHubFileWatch>> exact, TrieNode prefixes, List<GlobWatch> globs) {
+            this.exact = exact;
+            this.prefixes = prefixes;
+            this.globs = globs;
+        }
+
+        static BranchIndex build(Collection<GitHubFileWatch> watches) {
+            Map<String, List<GitHubFileWatch>> exact = new HashMap<>();
+            TrieNode prefixes = new TrieNode();
+            List<GlobWatch> globs = new ArrayList<>();
+            for (GitHubFileWatch watch : watches) {
+                String path = stripLeadingSlash(watch.getPath());
+                String directory = directoryPrefix(path);
+                if (directory != null) {
+                    prefixes.insert(directory, watch);
+                } else if (isGlob(path)) {
+                    globs.add(new GlobWatch(literalPrefix(path), compileGlob(path), watch));
+                } else {
+                    exact.computeIfAbsent(path, p -> new ArrayList<>(1)).add(watch);
+                }
+            }
+            return new BranchIndex(exact, prefixes, globs);
+        }
+
+        void collect(String changedPath, Set<GitHubFileWatch> out) {
+            List<GitHubFileWatch> hits = exact.get(changedPath);
+            if (hits != null) {
+                out.addAll(hits);
+            }
+            prefixes.collect(changedPath, out);
+            for (GlobWatch glob : globs) {
+                // Cheap literal-prefix check first so most paths never reach the regex
+                if (changedPath.startsWith(glob.prefix()) && glob.pattern().matcher(changedPath).matches()) {
+                    out.add(glob.watch());
+                }
+            }
+        }
+
+        /**
+         * "src/" and "src/**" watch everything under src; anything else is not a plain directory watch.
+         */
+        private static String directoryPrefix(String path) {
+            String dir = path.endsWith("/**") ? path.substring(0, path.length() - 2)
+                    : path.endsWith("/") ? path : null;
+            return dir == null || isGlob(dir) ? null : dir;
+        }
+
+        private static boolean isGlob(String path) {
+            for (int i = 0; i < path.length(); i++) {
+                char c = path.charAt(i);
+                if (c == '*' || c == '?' || c == '[' || c == '{') {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static String literalPrefix(String glob) {
+            for (int i = 0; i < glob.length(); i++) {
+                char c = glob.charAt(i);
+                if (c == '*' || c == '?' || c == '[' || c == '{') {
+                    return glob.substring(0, i);
+                }
+            }
+            return glob;
+        }
+
+        private static Pattern compileGlob(String glob) {
+            StringBuilder regex = new StringBuilder(glob.length() + 16);
+            int braces = 0;
+            for (int i = 0; i < glob.length(); i++) {
+                char c = glob.charAt(i);
+                if (c == '*') {
+                    if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                        boolean slash = i + 2 < glob.length() && glob.charAt(i + 2) == '/';
+                        // "**/" matches zero or more directories, a bare "**" anything
+                        regex.append(slash ? "(?:.*/)?" : ".*");
+                        i += slash ? 2 : 1;
+                    } else {
+                        regex.append("[^/]*");
+                    }
+                } else if (c == '?') {
+                    regex.append("[^/]");
+                } else if (c == '[' && classEnd(glob, i) > 0) {
+                    int end = classEnd(glob, i);
+                    appendClass(regex, glob, i + 1, end);
+                    i = end;
+                } else if (c == '{' && braceEnd(glob, i) > 0) {
+                    regex.append("(?:");
+                    braces++;
+                } else if (c == ',' && braces > 0) {
+                    regex.append('|');
+                } else if (c == '}' && braces > 0) {
+                    regex.append(')');
+                    braces--;
+                } else if ("\\.[]{}()+-^$|".indexOf(c) >= 0) {
+                    regex.append('\\').append(c);
+                } else {
+                    regex.append(c);
+                }
+            }
+            return Pattern.compile(regex.toString());
+        }
+
+        /**
+         * Index of the "]" closing the class opened at {@code open}, or -1 if it is unterminated and so a
+         * literal "[". A "]" right after the opening (or after its "!"/"^") is part of the class.
+         */
+        private static int classEnd(String glob, int open) {
+            int i = open + 1;
+            if (i < glob.length() && (glob.charAt(i) == '!' || glob.charAt(i) == '^')) {
+                i++;
+            }
+            if (i < glob.length() && glob.charAt(i) == ']') {
+                i++;
+            }
+            for (; i < glob.length(); i++) {
+                char c = glob.charAt(i);
+                if (c == ']') {
+                    return i;
+                }
+                if (c == '/') {
+                    return -1;
+                }
+            }
+            return -1;
+        }
+
+        /** Index of the "}" closing the alternation opened at {@code open}, or -1 if it is unterminated. */
+        private static int braceEnd(String glob, int open) {
+            int depth = 0;
+            for (int i = open; i < glob.length(); i++) {
+                char c = glob.charAt(i);
+                if (c == '{') {
+                    depth++;
+                } else if (c == '}' && --depth == 0) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        // "[a-z]" -> "[a-z&&[^/]]", "[!a-z]" -> "[^/a-z]": a class never matches a path separator
+        private static void appendClass(StringBuilder regex, String glob, int from, int to) {
+            boolean negated = glob.charAt(from) == '!' || glob.charAt(from) == '^';
+            regex.append(negated ? "[^/" : "[");
+            for (int i = negated ? from + 1 : from; i < to; i++) {
+                char c = glob.charAt(i);
+                if (c == '\\' || c == '[' || c == ']' || c == '&' || c == '^') {
+                    regex.append('\\');
+                }
+                regex.append(c);
+            }
+            regex.append(negated ? "]" : "&&[^/]]");
+        }
+
+        private static String stripLeadingSlash(String path) {
+            return path.startsWith("/") ? path.substring(1) : path;
+        }
+    }
+
+    private record GlobWatch(String prefix, Pattern pattern, GitHubFileWatch watch) {}
+
+    /**
+     * Trie over path segments; a node's watches match every path below it.
+     */
+    private static final class TrieNode {
+        private final Map<String, TrieNode> children = new LinkedHashMap<>();
+        private final List<GitHubFileWatch> watches = new ArrayList<>(0);
+
+        void insert(String directory, GitHubFileWatch watch) {
+            TrieNode node = this;
+            int start = 0;
+            while (start < directory.length()) {
+                int slash = directory.indexOf('/', start);
+                int end = slash < 0 ? directory.length() : slash;
+                if (end > start) {
+                    node = node.children.computeIfAbsent(directory.substring(start, end), s -> new TrieNode());
+                }
+                start = end + 1;
+            }
+            node.watches.add(watch);
+        }
+
+        void collect(String path, Set<GitHubFileWatch> out) {
+            TrieNode node = this;
+            out.addAll(node.watches);
+            int start = 0;
+            // Only directory segments are walked; the final file name cannot be a directory prefix
+            int slash;
+            while ((slash = path.indexOf('/', start)) >= 0) {
+                if (slash > start) {
+                    node = node.children.get(path.substring(start, slash));
+                    if (node == null) {
+                        return;
+                    }
+                    out.addAll(node.watches);
+                }
+                start = slash + 1;
+            }
+        }
+    }
+}
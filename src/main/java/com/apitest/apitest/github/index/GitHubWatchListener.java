@@ -0,0 +1,23 @@
+package com.apitest.apitest.github.index;
+
+import com.apitest.apitest.github.model.entity.GitHubFileWatch;
+
+import java.util.Collection;
+
+/**
+ * In-memory consumer of the file watch collection, kept in sync incrementally.
+ */
+public interface GitHubWatchListener {
+
+    /**
+     * Replace everything with a full snapshot of the active watches.
+     */
+    void onReload(Collection<GitHubFileWatch> watches);
+
+    /**
+     * A watch was inserted or updated; inactive watches should be dropped.
+     */
+    void onUpsert(GitHubFileWatch watch);
+
+    void onRemove(String watchId);
+}
@@ -0,0 +1,34 @@
+package com.apitest.apitest.github.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * A change to a watched file, pushed to the watch owner's event stream.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class GitHubChangeEvent {
+    private String watchId;
+    private String userId;
+    private String owner;
+    private String repo;
+    private String branch;
+    private String path;
+    private String sha;
+    /** Previously seen SHA; only known on the polling path. */
+    private String previousSha;
+    /** Commit author login or name; only known on the webhook path. */
+    private String author;
+    private List<String> addedLines;
+    /** "webhook" or "polling". */
+    private String source;
+    private Instant detectedAt;
+}
@@ -0,0 +1,19 @@
+package com.apitest.apitest.github.model.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Minimal view of an entry from the commits list endpoint; everything but the SHA is skipped while decoding.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class GitHubCommitSummary {
+    private String sha;
+}
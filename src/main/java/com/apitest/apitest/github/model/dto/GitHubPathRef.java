@@ -0,0 +1,20 @@
+package com.apitest.apitest.github.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A (repository, branch, path) tuple whose latest commit is being looked up.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class GitHubPathRef {
+    private String owner;
+    private String repo;
+    private String branch;
+    private String path;
+}
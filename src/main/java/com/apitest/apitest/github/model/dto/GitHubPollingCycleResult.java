@@ -0,0 +1,24 @@
+package com.apitest.apitest.github.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class GitHubPollingCycleResult {
+    private Instant startedAt;
+    private long watchesChecked;
+    private long watchesChanged;
+    /** Watches skipped because their token is currently rate-limited. */
+    private long watchesDeferred;
+    private long failures;
+    private long cycleTimeMs;
+    /** How late the sweep started relative to its schedule. */
+    private long lagMs;
+}
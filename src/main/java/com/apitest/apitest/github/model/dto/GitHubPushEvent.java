@@ -0,0 +1,44 @@
+package com.apitest.apitest.github.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The parts of a GitHub push payload the webhook pipeline uses.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class GitHubPushEvent {
+    private String ref;
+    private String owner;
+    private String repo;
+    @Builder.Default
+    private List<Commit> commits = new ArrayList<>();
+
+    public boolean hasKeyFields() {
+        return ref != null && !ref.isEmpty()
+                && owner != null && !owner.isEmpty()
+                && repo != null && !repo.isEmpty();
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Commit {
+        private String id;
+        private String authorLogin;
+        private String authorEmail;
+        @Builder.Default
+        private List<String> added = new ArrayList<>();
+        @Builder.Default
+        private List<String> modified = new ArrayList<>();
+    }
+}
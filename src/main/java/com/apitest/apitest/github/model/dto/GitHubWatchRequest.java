@@ -0,0 +1,18 @@
+package com.apitest.apitest.github.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class GitHubWatchRequest {
+    private String userId;
+    private String owner;
+    private String repo;
+    private String branch;
+    private String path;
+}
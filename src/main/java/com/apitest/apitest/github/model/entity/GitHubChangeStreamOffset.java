@@ -0,0 +1,27 @@
+package com.apitest.apitest.github.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Last processed resume token of a change stream, so a restart resumes where it left off.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "github_change_stream_offsets")
+public class GitHubChangeStreamOffset {
+    /** Name of the watched collection. */
+    @Id
+    private String id;
+    /** Resume token as extended JSON. */
+    private String resumeToken;
+    private Instant updatedAt;
+}
@@ -0,0 +1,31 @@
+package com.apitest.apitest.github.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Added lines of one file in one commit. Commits are immutable, so entries never need invalidation.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "github_commit_diffs")
+public class GitHubCommitDiff {
+    /** owner/repo@sha:path */
+    @Id
+    private String id;
+    private String owner;
+    private String repo;
+    private String sha;
+    private String path;
+    private List<String> addedLines;
+    private Instant fetchedAt;
+}
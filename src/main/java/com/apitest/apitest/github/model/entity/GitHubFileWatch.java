@@ -0,0 +1,60 @@
+package com.apitest.apitest.github.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.Objects;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@CompoundIndex(name = "bucket_active", def = "{'bucket': 1, 'active': 1}")
+@Document(collection = "github_file_watches")
+public class GitHubFileWatch {
+    @Id
+    private String id;
+    @Indexed
+    private String userId;
+    private String owner;
+    private String repo;
+    private String branch;
+    private String path;
+    private String oauthToken;
+
+    /**
+     * Stable non-negative hash of the watch's identity; {@code shardKey % buckets} assigns it to a polling bucket.
+     */
+    @Indexed
+    private Integer shardKey;
+
+    /**
+     * Polling bucket, {@code shardKey % buckets}, stored so a node can select its watches with an indexed {@code $in}.
+     */
+    private Integer bucket;
+
+    @Indexed
+    @Builder.Default
+    private Boolean active = true;
+
+    /**
+     * SHA of the latest commit seen for the path; null until the first poll records a baseline.
+     */
+    private String lastSeenSha;
+    private Instant lastCheckedAt;
+
+    @Builder.Default
+    private Instant createdAt = Instant.now();
+
+    public static int shardKeyOf(GitHubFileWatch watch) {
+        int hash = Objects.hash(watch.getUserId(), watch.getOwner(), watch.getRepo(), watch.getBranch(), watch.getPath());
+        return hash & Integer.MAX_VALUE;
+    }
+}
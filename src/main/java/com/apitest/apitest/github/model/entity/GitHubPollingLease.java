@@ -0,0 +1,28 @@
+package com.apitest.apitest.github.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Ownership of one polling bucket by one application instance, valid until {@code expiresAt}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "github_polling_leases")
+public class GitHubPollingLease {
+    @Id
+    private Integer bucket;
+    @Indexed
+    private String owner;
+    private Instant expiresAt;
+    private Instant heartbeatAt;
+}
@@ -0,0 +1,27 @@
+package com.apitest.apitest.github.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Liveness record of an instance taking part in sharded polling; used to size each node's share of buckets.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "github_polling_nodes")
+public class GitHubPollingNode {
+    @Id
+    private String instanceId;
+    /** Dead nodes disappear on their own once the heartbeat stops. */
+    @Indexed(expireAfter = "0s")
+    private Instant expiresAt;
+}
@@ -0,0 +1,48 @@
+package com.apitest.apitest.github.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * A raw webhook delivery queued for asynchronous processing. The id is GitHub's
+ * X-GitHub-Delivery header, so redeliveries collide on insert and are dropped.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "github_webhook_deliveries")
+@CompoundIndex(name = "status_received", def = "{'status': 1, 'receivedAt': 1}")
+public class GitHubWebhookDelivery {
+    @Id
+    private String deliveryId;
+    private String event;
+    /** Raw request body exactly as signed by GitHub. */
+    private byte[] payload;
+
+    @Builder.Default
+    private Status status = Status.PENDING;
+    private int attempts;
+    private String lastError;
+    private Instant receivedAt;
+    /** Earliest time the delivery may be claimed; pushed back exponentially after each failure. */
+    private Instant nextAttemptAt;
+    /** Lease held by the worker that claimed the delivery; expired leases are reclaimed. */
+    private Instant lockedUntil;
+
+    /** Processed deliveries expire after a week; until then they keep deduplicating redeliveries. */
+    @Indexed(expireAfter = "7d")
+    private Instant processedAt;
+
+    public enum Status {
+        PENDING, PROCESSING, DONE, FAILED
+    }
+}
@@ -0,0 +1,28 @@
+package com.apitest.apitest.github.polling;
+
+import com.apitest.apitest.github.model.entity.GitHubFileWatch;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.mapping.event.ReactiveBeforeConvertCallback;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * Fills in the shard key and polling bucket of every watch before it is written, whichever code path
+ * saves it.
+ */
+@Component
+public class GitHubFileWatchShardKeyCallback implements ReactiveBeforeConvertCallback<GitHubFileWatch> {
+
+    @Value("${github.polling.sharding.buckets:64}")
+    private int buckets;
+
+    @Override
+    public Publisher<GitHubFileWatch> onBeforeConvert(GitHubFileWatch watch, String collection) {
+        if (watch.getShardKey() == null) {
+            watch.setShardKey(GitHubFileWatch.shardKeyOf(watch));
+        }
+        watch.setBucket(watch.getShardKey() % buckets);
+        return Mono.just(watch);
+    }
+}
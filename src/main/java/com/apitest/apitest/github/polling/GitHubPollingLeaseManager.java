@@ -0,0 +1,255 @@
+package com.apitest.apitest.github.polling;
+
+import com.apitest.apitest.github.model.entity.GitHubFileWatch;
+import com.apitest.apitest.github.model.entity.GitHubPollingLease;
+import com.apitest.apitest.github.model.entity.GitHubPollingNode;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.ArithmeticOperators;
+import org.springframework.data.mongodb.core.aggregation.ComparisonOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import jakarta.annotation.PreDestroy;
+import java.net.InetAddress;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Splits file watches into hash buckets and claims buckets through lease documents in Mongo, so
+ * several instances share the polling load. Each heartbeat renews this node's leases, claims free or
+ * expired buckets up to its fair share (buckets / live nodes) and releases any excess so a newly
+ * joined node can pick it up. When sharding is disabled this node owns every bucket.
+ */
+@Slf4j
+@Component
+public class GitHubPollingLeaseManager {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final String instanceId;
+    private final Set<Integer> owned = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean heartbeating = new AtomicBoolean(false);
+
+    @Value("${github.polling.sharding.enabled:false}")
+    private boolean enabled;
+
+    @Value("${github.polling.sharding.buckets:64}")
+    private int buckets;
+
+    @Value("${github.polling.sharding.lease-ms:30000}")
+    private long leaseMs;
+
+    public GitHubPollingLeaseManager(ReactiveMongoTemplate mongoTemplate, MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.instanceId = hostName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+        Gauge.builder("github.polling.buckets.owned", owned, Set::size)
+                .description("Polling buckets currently leased by this instance")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int bucketCount() {
+        return buckets;
+    }
+
+    public Set<Integer> ownedBuckets() {
+        return Set.copyOf(owned);
+    }
+
+    /**
+     * Criteria selecting the watches of the buckets this node owns; null when sharding is off.
+     */
+    public Criteria ownedWatchesCriteria() {
+        if (!enabled) {
+            return null;
+        }
+        Set<Integer> current = ownedBuckets();
+        return current.isEmpty() ? null : Criteria.where("bucket").in(current);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        log.info("Sharded polling enabled: instance {} competing for {} buckets", instanceId, buckets);
+        backfillBuckets();
+        heartbeat();
+    }
+
+    /**
+     * Watches saved before shard keys existed, or bucketed under a different bucket count, would never
+     * be selected. Saving the keyless ones fills both fields in; the rest are rebucketed in one update.
+     */
+    private void backfillBuckets() {
+        Query stale = new Query(new Criteria().orOperator(
+                Criteria.where("bucket").exists(false),
+                Criteria.expr(ComparisonOperators.valueOf("bucket")
+                        .notEqualTo(ArithmeticOperators.valueOf("shardKey").mod(buckets)))));
+        AggregationUpdate rebucket = AggregationUpdate.update()
+                .set("bucket").toValue(ArithmeticOperators.valueOf("shardKey").mod(buckets));
+        mongoTemplate.find(new Query(Criteria.where("shardKey").exists(false)), GitHubFileWatch.class)
+                .flatMap(mongoTemplate::save, 8)
+                .count()
+                .flatMap(keyed -> mongoTemplate.updateMulti(stale, rebucket, GitHubFileWatch.class)
+                        .map(result -> keyed + result.getModifiedCount()))
+                .subscribe(n -> {
+                    if (n > 0) {
+                        log.info("Backfilled polling buckets for {} file watches", n);
+                    }
+                }, e -> log.warn("Polling bucket backfill failed: {}", e.getMessage()));
+    }
+
+    @Scheduled(fixedDelayString = "${github.polling.sharding.heartbeat-ms:10000}")
+    public void heartbeat() {
+        if (!enabled || !heartbeating.compareAndSet(false, true)) {
+            return;
+        }
+        Instant now = Instant.now();
+        Instant expiresAt = now.plusMillis(leaseMs);
+
+        registerNode(expiresAt)
+                .then(renewOwned(now, expiresAt))
+                .then(liveNodes(now))
+                .flatMap(nodes -> {
+                    int target = (int) Math.ceil((double) buckets / Math.max(1, nodes));
+                    if (owned.size() > target) {
+                        return release(owned.size() - target);
+                    }
+                    if (owned.size() < target) {
+                        return claim(target - owned.size(), now, expiresAt);
+                    }
+                    return Mono.empty();
+                })
+                .doFinally(signal -> heartbeating.set(false))
+                .subscribe(v -> { },
+                        e -> log.warn("Polling lease heartbeat failed: {}", e.getMessage()),
+                        () -> log.debug("Instance {} owns {} of {} polling buckets", instanceId, owned.size(), buckets));
+    }
+
+    private Mono<Void> registerNode(Instant expiresAt) {
+        return mongoTemplate.save(GitHubPollingNode.builder().instanceId(instanceId).expiresAt(expiresAt).build()).then();
+    }
+
+    /**
+     * Extend every lease still held by this node and forget any that expired or another node took over.
+     * Only live leases are adopted, so buckets released earlier or lost while this node stalled are not
+     * polled again without being claimed.
+     */
+    private Mono<Void> renewOwned(Instant now, Instant expiresAt) {
+        Query mine = new Query(Criteria.where("owner").is(instanceId).and("expiresAt").gt(now));
+        return mongoTemplate.updateMulti(mine, new Update().set("expiresAt", expiresAt).set("heartbeatAt", now),
+                        GitHubPollingLease.class)
+                .thenMany(mongoTemplate.find(mine, GitHubPollingLease.class))
+                .map(GitHubPollingLease::getBucket)
+                .filter(bucket -> bucket < buckets)
+                .collectList()
+                .doOnNext(current -> {
+                    owned.retainAll(current);
+                    owned.addAll(current);
+                })
+                .then();
+    }
+
+    private Mono<Long> liveNodes(Instant now) {
+        return mongoTemplate.count(new Query(Criteria.where("expiresAt").gt(now)), GitHubPollingNode.class);
+    }
+
+    private Mono<Void> claim(int wanted, Instant now, Instant expiresAt) {
+        List<Integer> candidates = new ArrayList<>();
+        for (int b = 0; b < buckets; b++) {
+            if (!owned.contains(b)) {
+                candidates.add(b);
+            }
+        }
+        // Random order keeps competing nodes from racing for the same buckets
+        Collections.shuffle(candidates);
+        return Flux.fromIterable(candidates)
+                .concatMap(bucket -> tryClaim(bucket, now, expiresAt))
+                .take(wanted)
+                .then();
+    }
+
+    /**
+     * Take the bucket if its lease is missing or expired. When another node holds a live lease the
+     * upsert collides on _id and the claim is skipped.
+     */
+    private Mono<Integer> tryClaim(int bucket, Instant now, Instant expiresAt) {
+        Query free = new Query(Criteria.where("_id").is(bucket).and("expiresAt").lt(now));
+        Update take = new Update().set("owner", instanceId).set("expiresAt", expiresAt).set("heartbeatAt", now);
+        return mongoTemplate.findAndModify(free, take, FindAndModifyOptions.options().upsert(true).returnNew(true),
+                        GitHubPollingLease.class)
+                .filter(lease -> instanceId.equals(lease.getOwner()))
+                .map(lease -> {
+                    owned.add(bucket);
+                    log.info("Instance {} claimed polling bucket {}", instanceId, bucket);
+                    return bucket;
+                })
+                .onErrorResume(DuplicateKeyException.class, e -> Mono.empty());
+    }
+
+    private Mono<Void> release(int count) {
+        List<Integer> toRelease = owned.stream().limit(count).toList();
+        owned.removeAll(toRelease);
+        return releaseLeases(toRelease);
+    }
+
+    private Mono<Void> releaseLeases(List<Integer> bucketIds) {
+        if (bucketIds.isEmpty()) {
+            return Mono.empty();
+        }
+        Query query = new Query(Criteria.where("_id").in(bucketIds).and("owner").is(instanceId));
+        Update release = new Update().set("expiresAt", Instant.EPOCH).unset("owner");
+        return mongoTemplate.updateMulti(query, release, GitHubPollingLease.class)
+                .doOnNext(result -> log.info("Instance {} released polling buckets {}", instanceId, bucketIds))
+                .then();
+    }
+
+    /**
+     * Hand buckets back immediately on shutdown instead of making other nodes wait for expiry.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (!enabled) {
+            return;
+        }
+        List<Integer> all = List.copyOf(owned);
+        owned.clear();
+        releaseLeases(all)
+                .then(mongoTemplate.remove(new Query(Criteria.where("_id").is(instanceId)), GitHubPollingNode.class))
+                .timeout(Duration.ofSeconds(5))
+                .onErrorResume(e -> Mono.empty())
+                .block();
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "node";
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.apitest.apitest.github.ratelimit;
+
+import lombok.Getter;
+
+import java.time.Instant;
+
+/**
+ * Raised instead of calling GitHub when a token's quota would not recover within the allowed wait.
+ */
+@Getter
+public class GitHubRateLimitException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String tokenFingerprint;
+    private final Instant retryAt;
+
+    public GitHubRateLimitException(String tokenFingerprint, Instant retryAt) {
+        super("GitHub rate limit budget exhausted for token " + tokenFingerprint + "; retry at " + retryAt);
+        this.tokenFingerprint = tokenFingerprint;
+        this.retryAt = retryAt;
+    }
+}
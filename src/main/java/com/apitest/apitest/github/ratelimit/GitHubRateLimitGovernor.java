@@ -0,0 +1,267 @@
+package com.apitest.apitest.github.ratelimit;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks GitHub quota per OAuth token from the X-RateLimit-* and Retry-After response headers.
+ * Calls are delayed while a token is blocked and shed with {@link GitHubRateLimitException}
+ * when the block would last longer than the configured maximum wait. REST ("core") and GraphQL
+ * calls draw on separate GitHub budgets and are tracked separately.
+ */
+@Slf4j
+@Component
+public class GitHubRateLimitGovernor {
+
+    private static final String TOKEN_PREFIX = "token ";
+    private static final long UNKNOWN = -1;
+    public static final String CORE = "core";
+    public static final String GRAPHQL = "graphql";
+
+    private final MeterRegistry meterRegistry;
+    // Tokens rotate, so only the most recently used ones are tracked; evicted entries drop their gauges
+    private final Map<QuotaKey, TokenQuota> quotas;
+
+    @Value("${github.rate-limit.reserve:50}")
+    private long reserve;
+
+    @Value("${github.rate-limit.max-wait-ms:5000}")
+    private long maxWaitMs;
+
+    @Value("${github.rate-limit.secondary-backoff-ms:60000}")
+    private long secondaryBackoffMs;
+
+    public GitHubRateLimitGovernor(MeterRegistry meterRegistry,
+                                   @Value("${github.rate-limit.max-tracked-tokens:1000}") int maxTrackedTokens) {
+        this.meterRegistry = meterRegistry;
+        int maxEntries = Math.max(1, maxTrackedTokens);
+        this.quotas = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<QuotaKey, TokenQuota> eldest) {
+                if (size() <= maxEntries) {
+                    return false;
+                }
+                eldest.getValue().gauges.forEach(meterRegistry::remove);
+                return true;
+            }
+        };
+    }
+
+    /**
+     * WebClient filter that gates every request carrying a {@code token ...} Authorization header.
+     */
+    public ExchangeFilterFunction filter() {
+        return (request, next) -> {
+            String token = tokenOf(request.headers().getFirst(HttpHeaders.AUTHORIZATION));
+            if (token == null) {
+                return next.exchange(request);
+            }
+            String resource = request.url().getPath().endsWith("/graphql") ? GRAPHQL : CORE;
+            return acquire(token, resource)
+                    .then(Mono.defer(() -> next.exchange(request)))
+                    .flatMap(response -> {
+                        HttpHeaders headers = response.headers().asHttpHeaders();
+                        if (!mayBeSecondaryLimit(response.statusCode(), headers)) {
+                            record(token, resource, headers, response.statusCode());
+                            return Mono.just(response);
+                        }
+                        // A 403 is only a secondary limit if the error message says so; read the small
+                        // error body and hand an identical response on to the caller
+                        return response.bodyToMono(String.class)
+                                .defaultIfEmpty("")
+                                .map(body -> {
+                                    record(token, resource, headers, response.statusCode(), isSecondaryLimitMessage(body));
+                                    return response.mutate().body(body).build();
+                                });
+                    });
+        };
+    }
+
+    private static boolean mayBeSecondaryLimit(HttpStatusCode status, HttpHeaders headers) {
+        return status.isSameCodeAs(HttpStatus.FORBIDDEN)
+                && headers.getFirst(HttpHeaders.RETRY_AFTER) == null
+                && !"0".equals(headers.getFirst("X-RateLimit-Remaining"));
+    }
+
+    static boolean isSecondaryLimitMessage(String body) {
+        String message = body.toLowerCase(Locale.ROOT);
+        return message.contains("secondary rate limit") || message.contains("abuse detection");
+    }
+
+    /**
+     * Completes when a call for the token may proceed, possibly after a delay.
+     */
+    public Mono<Void> acquire(String token, String resource) {
+        TokenQuota quota = quota(token, resource);
+        long now = System.currentTimeMillis();
+        long blockedUntil = quota.blockedUntil(now, reserve);
+        if (blockedUntil <= now) {
+            quota.consume();
+            return Mono.empty();
+        }
+        long waitMs = blockedUntil - now;
+        if (waitMs > maxWaitMs) {
+            return Mono.error(new GitHubRateLimitException(quota.fingerprint, Instant.ofEpochMilli(blockedUntil)));
+        }
+        log.debug("Delaying GitHub call for token {} by {} ms", quota.fingerprint, waitMs);
+        return Mono.delay(Duration.ofMillis(waitMs)).then(Mono.fromRunnable(quota::consume));
+    }
+
+    /**
+     * Whether calls for the token against the given resource would currently be delayed or shed.
+     */
+    public boolean isThrottled(String token, String resource) {
+        long now = System.currentTimeMillis();
+        return quota(token, resource).blockedUntil(now, reserve) > now;
+    }
+
+    public void record(String token, String resource, HttpHeaders headers, HttpStatusCode status) {
+        record(token, resource, headers, status, status.isSameCodeAs(HttpStatus.TOO_MANY_REQUESTS));
+    }
+
+    /**
+     * @param secondaryLimit whether the response reports a secondary rate limit: always for 429, for 403
+     *                       only when the error message says so
+     */
+    public void record(String token, String resource, HttpHeaders headers, HttpStatusCode status,
+                       boolean secondaryLimit) {
+        TokenQuota quota = quota(token, resource);
+        long now = System.currentTimeMillis();
+
+        Long limit = longHeader(headers, "X-RateLimit-Limit");
+        Long remaining = longHeader(headers, "X-RateLimit-Remaining");
+        Long reset = longHeader(headers, "X-RateLimit-Reset");
+        if (limit != null) {
+            quota.limit.set(limit);
+        }
+        if (remaining != null) {
+            quota.remaining.set(remaining);
+        }
+        if (reset != null) {
+            quota.resetAtMs.set(reset * 1000);
+        }
+
+        Long retryAfter = longHeader(headers, HttpHeaders.RETRY_AFTER);
+        if (retryAfter != null) {
+            quota.retryAfterUntilMs.set(now + retryAfter * 1000);
+            log.warn("GitHub secondary rate limit for token {}; backing off {}s", quota.fingerprint, retryAfter);
+        } else if ((status.isSameCodeAs(HttpStatus.FORBIDDEN) || status.isSameCodeAs(HttpStatus.TOO_MANY_REQUESTS))
+                && remaining != null && remaining == 0) {
+            log.warn("GitHub primary rate limit exhausted for token {} until {}", quota.fingerprint,
+                    Instant.ofEpochMilli(quota.resetAtMs.get()));
+        } else if (secondaryLimit) {
+            // GitHub asks for at least a minute when a secondary limit comes without Retry-After
+            quota.retryAfterUntilMs.set(now + secondaryBackoffMs);
+            log.warn("GitHub secondary rate limit for token {} without Retry-After; backing off {} ms",
+                    quota.fingerprint, secondaryBackoffMs);
+        }
+    }
+
+    private TokenQuota quota(String token, String resource) {
+        synchronized (quotas) {
+            return quotas.computeIfAbsent(new QuotaKey(token, resource), key -> {
+                TokenQuota quota = new TokenQuota(fingerprint(key.token()));
+                quota.gauges.add(Gauge.builder("github.ratelimit.remaining", quota.remaining, AtomicLong::get)
+                        .description("Remaining GitHub quota for the token (-1 when unknown)")
+                        .tag("token", quota.fingerprint)
+                        .tag("resource", key.resource())
+                        .register(meterRegistry));
+                quota.gauges.add(Gauge.builder("github.ratelimit.limit", quota.limit, AtomicLong::get)
+                        .description("GitHub quota limit for the token (-1 when unknown)")
+                        .tag("token", quota.fingerprint)
+                        .tag("resource", key.resource())
+                        .register(meterRegistry));
+                return quota;
+            });
+        }
+    }
+
+    private static String tokenOf(String authorization) {
+        if (authorization == null || !authorization.startsWith(TOKEN_PREFIX)) {
+            return null;
+        }
+        return authorization.substring(TOKEN_PREFIX.length());
+    }
+
+    private static Long longHeader(HttpHeaders headers, String name) {
+        String value = headers.getFirst(name);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Short, non-reversible identifier for a token, safe to use as a metric tag or in logs.
+     */
+    public static String fingerprint(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 6);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record QuotaKey(String token, String resource) {}
+
+    private static final class TokenQuota {
+        private final String fingerprint;
+        private final AtomicLong limit = new AtomicLong(UNKNOWN);
+        private final AtomicLong remaining = new AtomicLong(UNKNOWN);
+        private final AtomicLong resetAtMs = new AtomicLong();
+        private final AtomicLong retryAfterUntilMs = new AtomicLong();
+        private final List<Meter> gauges = new ArrayList<>(2);
+
+        private TokenQuota(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+
+        /**
+         * Epoch millis until which calls must wait; at or before {@code now} means go.
+         */
+        private long blockedUntil(long now, long reserve) {
+            long until = retryAfterUntilMs.get();
+            long left = remaining.get();
+            long resetAt = resetAtMs.get();
+            if (left != UNKNOWN && left <= reserve && resetAt > now) {
+                until = Math.max(until, resetAt);
+            }
+            return until;
+        }
+
+        /**
+         * Optimistically count the call so concurrent callers do not all pass on the same stale value;
+         * the next response headers overwrite it with GitHub's figure.
+         */
+        private void consume() {
+            remaining.updateAndGet(v -> v > 0 ? v - 1 : v);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.apitest.apitest.github.repository;
+
+import com.apitest.apitest.github.model.entity.GitHubCommitDiff;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface GitHubCommitDiffRepository extends ReactiveMongoRepository<GitHubCommitDiff, String> {
+}
@@ -0,0 +1,14 @@
+package com.apitest.apitest.github.repository;
+
+import com.apitest.apitest.github.model.entity.GitHubFileWatch;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+@Repository
+public interface GitHubFileWatchRepository extends ReactiveMongoRepository<GitHubFileWatch, String> {
+
+    Flux<GitHubFileWatch> findByActiveTrue();
+
+    Flux<GitHubFileWatch> findByUserId(String userId);
+}
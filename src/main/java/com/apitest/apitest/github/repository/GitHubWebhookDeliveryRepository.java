@@ -0,0 +1,12 @@
+package com.apitest.apitest.github.repository;
+
+import com.apitest.apitest.github.model.entity.GitHubWebhookDelivery;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+@Repository
+public interface GitHubWebhookDeliveryRepository extends ReactiveMongoRepository<GitHubWebhookDelivery, String> {
+
+    Mono<Long> countByStatus(GitHubWebhookDelivery.Status status);
+}
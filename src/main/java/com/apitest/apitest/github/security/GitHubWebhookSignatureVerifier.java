@@ -0,0 +1,72 @@
+package com.apitest.apitest.github.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Verifies X-Hub-Signature-256 over the raw request bytes. Initialised {@link Mac} instances are
+ * pooled per secret, and the header is decoded to bytes once so the digests are compared in binary.
+ */
+@Slf4j
+@Component
+public class GitHubWebhookSignatureVerifier {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final String PREFIX = "sha256=";
+    private static final int DIGEST_LENGTH = 32;
+    private static final int MAX_POOLED_PER_SECRET = 64;
+
+    private final Map<String, Queue<Mac>> pools = new ConcurrentHashMap<>();
+
+    /**
+     * @param signatureHeader value of X-Hub-Signature-256, e.g. {@code sha256=<hex>}
+     */
+    public boolean isValid(byte[] payload, String signatureHeader, String secret) {
+        if (payload == null || signatureHeader == null || !signatureHeader.startsWith(PREFIX)
+                || signatureHeader.length() != PREFIX.length() + DIGEST_LENGTH * 2) {
+            return false;
+        }
+
+        byte[] provided;
+        try {
+            provided = HexFormat.of().parseHex(signatureHeader, PREFIX.length(), signatureHeader.length());
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+
+        Queue<Mac> pool = pools.computeIfAbsent(secret, s -> new ConcurrentLinkedQueue<>());
+        Mac mac = pool.poll();
+        try {
+            if (mac == null) {
+                mac = newMac(secret);
+            }
+            byte[] expected = mac.doFinal(payload);
+            return MessageDigest.isEqual(expected, provided);
+        } catch (GeneralSecurityException e) {
+            log.error("Unable to compute webhook signature: {}", e.getMessage());
+            return false;
+        } finally {
+            // doFinal resets the Mac, so it can go straight back into the pool
+            if (mac != null && pool.size() < MAX_POOLED_PER_SECRET) {
+                pool.offer(mac);
+            }
+        }
+    }
+
+    private static Mac newMac(String secret) throws GeneralSecurityException {
+        Mac mac = Mac.getInstance(ALGORITHM);
+        mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM));
+        return mac;
+    }
+}
@@ -0,0 +1,24 @@
+package com.apitest.apitest.github.service;
+
+import com.apitest.apitest.github.model.dto.GitHubChangeEvent;
+import reactor.core.publisher.Flux;
+
+public interface GitHubChangeEventService {
+
+    /**
+     * Hand an event to the current subscribers of its user. Never blocks; events for users without
+     * subscribers are dropped.
+     */
+    void publish(GitHubChangeEvent event);
+
+    /**
+     * Whether anyone is listening for the user's events, so callers can skip work nobody will see.
+     */
+    boolean hasSubscribers(String userId);
+
+    /**
+     * Live change events for the user. Each subscriber has its own bounded buffer; when it falls
+     * behind, the oldest buffered events are dropped instead of slowing other subscribers down.
+     */
+    Flux<GitHubChangeEvent> subscribe(String userId);
+}
@@ -2,18 +2,28 @@ package com.apitest.apitest.github.service;
 
 import com.apitest.apitest.github.model.dto.GitHubAuthResponse;
 import com.apitest.apitest.github.model.dto.GitHubBranch;
+import com.apitest.apitest.github.model.dto.GitHubPathRef;
 import com.apitest.apitest.github.model.dto.GitHubRepository;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.Map;
+
 public interface GitHubService {
 
     Mono<GitHubAuthResponse> getAccessToken(String code);
 
     Mono<String> getGitHubAuthorizeUrl();
 
+    /**
+     * Stream all repositories of the token's user, following pagination lazily as items are consumed.
+     */
     Flux<GitHubRepository> getUserRepositories(String token);
 
+    /**
+     * Stream all branches of the repository, following pagination lazily as items are consumed.
+     */
     Flux<GitHubBranch> getRepositoryBranches(String token, String owner, String repo);
 
     /**
@@ -34,6 +44,12 @@ public interface GitHubService {
      */
     Mono<String> getLatestCommitShaForPath(String token, String owner, String repo, String branch, String path);
 
+    /**
+     * Get the latest commit SHA for many paths at once through batched GraphQL queries, falling back to
+     * {@link #getLatestCommitShaForPath} per item when a query fails. Paths without any commit are absent from the map.
+     */
+    Mono<Map<GitHubPathRef, String>> getLatestCommitShasForPaths(String token, List<GitHubPathRef> refs);
+
     /**
      * Get added lines for a file in a specific commit. Returns empty list if the file wasn't part of the commit or no additions.
      */
@@ -0,0 +1,15 @@
+package com.apitest.apitest.github.service;
+
+import com.apitest.apitest.github.model.dto.GitHubPollingCycleResult;
+import reactor.core.publisher.Mono;
+
+public interface GitHubWatchPollingService {
+
+    /**
+     * Run one sweep over all active file watches. Each watch costs one latest-commit lookup;
+     * the commit diff is only fetched when the SHA differs from the last one recorded.
+     *
+     * @return stats for the sweep, or empty if a previous sweep is still running
+     */
+    Mono<GitHubPollingCycleResult> pollOnce();
+}
@@ -0,0 +1,20 @@
+package com.apitest.apitest.github.service;
+
+import reactor.core.publisher.Mono;
+
+public interface GitHubWebhookQueueService {
+
+    /**
+     * Append a verified delivery to the durable queue.
+     *
+     * @return true if queued, false if the delivery id was already seen
+     */
+    Mono<Boolean> enqueue(String deliveryId, String event, byte[] payload);
+
+    /**
+     * Claim and process queued deliveries until a claim comes back short of a full batch.
+     *
+     * @return number of deliveries processed
+     */
+    Mono<Long> drain();
+}
@@ -0,0 +1,19 @@
+package com.apitest.apitest.github.service;
+
+import com.apitest.apitest.github.model.dto.GitHubPushEvent;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+
+public interface GitHubWebhookService {
+
+    /**
+     * Extract ref, repository and per-commit added/modified paths from a push payload.
+     */
+    GitHubPushEvent parsePush(byte[] payload) throws IOException;
+
+    /**
+     * Apply a parsed push event. Used by both the inline and the queued ingest paths.
+     */
+    Mono<Void> handlePush(GitHubPushEvent event);
+}
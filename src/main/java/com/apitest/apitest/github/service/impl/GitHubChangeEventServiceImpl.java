@@ -0,0 +1,92 @@
+package com.apitest.apitest.github.service.impl;
+
+import com.apitest.apitest.github.model.dto.GitHubChangeEvent;
+import com.apitest.apitest.github.service.GitHubChangeEventService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One best-effort multicast sink per user. The sink never buffers or waits for demand, so a publish is
+ * O(subscribers) and cannot stall the poller or webhook pipeline; each subscriber drains through its
+ * own bounded {@code DROP_OLDEST} buffer. Sinks are created on the first subscribe and removed when
+ * the last subscriber leaves.
+ */
+@Slf4j
+@Service
+public class GitHubChangeEventServiceImpl implements GitHubChangeEventService {
+
+    private final Map<String, UserChannel> channels = new ConcurrentHashMap<>();
+    private final AtomicInteger subscribers = new AtomicInteger();
+    private final Counter publishedCounter;
+    private final Counter droppedCounter;
+
+    @Value("${github.events.subscriber-buffer:256}")
+    private int subscriberBuffer;
+
+    public GitHubChangeEventServiceImpl(MeterRegistry meterRegistry) {
+        this.publishedCounter = Counter.builder("github.events.published")
+                .description("Change events published to users with open subscriptions")
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder("github.events.dropped")
+                .description("Change events dropped from a slow subscriber's buffer")
+                .register(meterRegistry);
+        Gauge.builder("github.events.subscribers", subscribers, AtomicInteger::get)
+                .description("Open change-event subscriptions")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void publish(GitHubChangeEvent event) {
+        UserChannel channel = channels.get(event.getUserId());
+        if (channel == null) {
+            return;
+        }
+        // Concurrent publishers for the same user race on the sink; retry briefly instead of losing the event
+        channel.sink.emitNext(event, Sinks.EmitFailureHandler.busyLooping(Duration.ofMillis(50)));
+        publishedCounter.increment();
+    }
+
+    @Override
+    public boolean hasSubscribers(String userId) {
+        return channels.containsKey(userId);
+    }
+
+    @Override
+    public Flux<GitHubChangeEvent> subscribe(String userId) {
+        return Flux.defer(() -> {
+                    UserChannel channel = channels.compute(userId, (id, existing) -> {
+                        UserChannel c = existing != null ? existing : new UserChannel();
+                        c.refs.incrementAndGet();
+                        return c;
+                    });
+                    subscribers.incrementAndGet();
+                    return channel.sink.asFlux()
+                            .onBackpressureBuffer(Math.max(1, subscriberBuffer),
+                                    dropped -> droppedCounter.increment(), BufferOverflowStrategy.DROP_OLDEST)
+                            .doFinally(signal -> release(userId, channel));
+                });
+    }
+
+    private void release(String userId, UserChannel channel) {
+        subscribers.decrementAndGet();
+        channels.computeIfPresent(userId, (id, current) ->
+                current == channel && current.refs.decrementAndGet() == 0 ? null : current);
+    }
+
+    private static final class UserChannel {
+        private final Sinks.Many<GitHubChangeEvent> sink = Sinks.many().multicast().directBestEffort();
+        private final AtomicInteger refs = new AtomicInteger();
+    }
+}
@@ -1,33 +1,83 @@
 package com.apitest.apitest.github.service.impl;
 
+import com.apitest.apitest.config.WebClientConfig;
+import com.apitest.apitest.github.cache.GitHubCommitDiffCache;
+import com.apitest.apitest.github.cache.GitHubRequestCoalescer;
+import com.apitest.apitest.github.cache.GitHubResponseCache;
+import com.apitest.apitest.github.graphql.GitHubGraphQlBatchResolver;
 import com.apitest.apitest.github.model.dto.GitHubAuthResponse;
 import com.apitest.apitest.github.model.dto.GitHubBranch;
+import com.apitest.apitest.github.model.dto.GitHubCommitSummary;
+import com.apitest.apitest.github.model.dto.GitHubPathRef;
 import com.apitest.apitest.github.model.dto.GitHubRepository;
+import com.apitest.apitest.github.ratelimit.GitHubRateLimitGovernor;
 import com.apitest.apitest.github.service.GitHubService;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.function.Function;
 
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class GitHubServiceimpl implements GitHubService {
 
+    private static final ParameterizedTypeReference<List<GitHubRepository>> REPOSITORY_LIST =
+            new ParameterizedTypeReference<>() {};
+    private static final ParameterizedTypeReference<List<GitHubBranch>> BRANCH_LIST =
+            new ParameterizedTypeReference<>() {};
+    private static final ParameterizedTypeReference<List<GitHubCommitSummary>> COMMIT_SUMMARY_LIST =
+            new ParameterizedTypeReference<>() {};
+
+    private static final int PAGE_SIZE = 100;
+
     private final WebClient webClient;
+    private final GitHubResponseCache responseCache;
+    private final GitHubCommitDiffCache commitDiffCache;
+    private final GitHubRequestCoalescer requestCoalescer;
+    private final GitHubGraphQlBatchResolver graphQlResolver;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    public GitHubServiceimpl(WebClient webClient,
+                             GitHubResponseCache responseCache,
+                             GitHubCommitDiffCache commitDiffCache,
+                             GitHubRequestCoalescer requestCoalescer,
+                             GitHubRateLimitGovernor rateLimitGovernor,
+                             @Value("${github.api.graphql-url:https://api.github.com/graphql}") String graphQlUrl,
+                             @Value("${github.graphql.batch-size:50}") int graphQlBatchSize) {
+        // Every call made with a user token goes through the shared per-token rate-limit governor
+        this.webClient = webClient.mutate().filter(rateLimitGovernor.filter()).build();
+        this.responseCache = responseCache;
+        this.commitDiffCache = commitDiffCache;
+        this.requestCoalescer = requestCoalescer;
+        this.graphQlResolver = new GitHubGraphQlBatchResolver(this.webClient, objectMapper, graphQlUrl, graphQlBatchSize);
+    }
+
     @Value("${github.client.id}")
     private String clientId;
 
@@ -37,6 +87,12 @@ public class GitHubServiceimpl implements GitHubService {
     @Value("${github.redirect-uri}")
     private String redirectUri;
 
+    @Value("${github.api.commit-response-timeout-ms:60000}")
+    private long commitResponseTimeoutMs;
+
+    @Value("${github.pagination.prefetch-pages:1}")
+    private int prefetchPages;
+
     @Override
     public Mono<GitHubAuthResponse> getAccessToken(String code) {
         MultiValueMap<String, String> formData = new LinkedMultiValueMap<>();
@@ -76,20 +132,14 @@ public class GitHubServiceimpl implements GitHubService {
 
     @Override
     public Flux<GitHubRepository> getUserRepositories(String token) {
-        return webClient.get()
-                .uri("https://api.github.com/user/repos")
-                .header(HttpHeaders.AUTHORIZATION, "token " + token)
-                .retrieve()
-                .bodyToFlux(GitHubRepository.class);
+        URI uri = URI.create("https://api.github.com/user/repos?per_page=" + PAGE_SIZE);
+        return paginate(token, uri, REPOSITORY_LIST);
     }
 
     @Override
     public Flux<GitHubBranch> getRepositoryBranches(String token, String owner, String repo) {
-        return webClient.get()
-                .uri(String.format("https://api.github.com/repos/%s/%s/branches", owner, repo))
-                .header(HttpHeaders.AUTHORIZATION, "token " + token)
-                .retrieve()
-                .bodyToFlux(GitHubBranch.class);
+        URI uri = URI.create(String.format("https://api.github.com/repos/%s/%s/branches?per_page=%d", owner, repo, PAGE_SIZE));
+        return paginate(token, uri, BRANCH_LIST);
     }
 
     @Override
@@ -123,45 +173,188 @@ public class GitHubServiceimpl implements GitHubService {
     @Override
     public Mono<String> getLatestCommitShaForPath(String token, String owner, String repo, String branch, String path) {
         String branchRef = branch.startsWith("refs/") ? branch : ("refs/heads/" + branch);
-        return webClient.get()
-                .uri(uriBuilder -> uriBuilder
-                        .scheme("https")
-                        .host("api.github.com")
-                        .path(String.format("/repos/%s/%s/commits", owner, repo))
-                        .queryParam("sha", branchRef)
-                        .queryParam("path", path)
-                        .queryParam("per_page", 1)
-                        .build())
-                .header(HttpHeaders.AUTHORIZATION, "token " + token)
-                .retrieve()
-                .bodyToFlux(Object.class)
-                .next()
-                .map(obj -> objectMapper.convertValue(obj, java.util.Map.class))
-                .map(map -> (String) map.get("sha"));
+        URI uri = UriComponentsBuilder.fromUriString("https://api.github.com")
+                .path(String.format("/repos/%s/%s/commits", owner, repo))
+                .queryParam("sha", branchRef)
+                .queryParam("path", path)
+                .queryParam("per_page", 1)
+                .build()
+                .encode()
+                .toUri();
+        return conditionalGet(token, uri, COMMIT_SUMMARY_LIST)
+                .flatMap(commits -> commits.isEmpty() || commits.get(0).getSha() == null
+                        ? Mono.empty()
+                        : Mono.just(commits.get(0).getSha()));
+    }
+
+    @Override
+    public Mono<Map<GitHubPathRef, String>> getLatestCommitShasForPaths(String token, List<GitHubPathRef> refs) {
+        return graphQlResolver.resolve(token, refs, ref ->
+                getLatestCommitShaForPath(token, ref.getOwner(), ref.getRepo(), ref.getBranch(), ref.getPath()));
     }
 
     @Override
     public Flux<String> getAddedLinesInCommitForPath(String token, String owner, String repo, String commitSha, String path) {
+        // The token only gates the fetch on a miss: callers reach a SHA through a lookup made with their own token
+        return commitDiffCache.get(owner, repo, commitSha, path,
+                        () -> fetchAddedLines(token, owner, repo, commitSha, path).collectList())
+                .flatMapIterable(lines -> lines);
+    }
+
+    private Flux<String> fetchAddedLines(String token, String owner, String repo, String commitSha, String path) {
+        URI firstPage = URI.create(String.format("https://api.github.com/repos/%s/%s/commits/%s", owner, repo, commitSha));
+        // Commits with more than 300 files paginate the file list; stop at the first page that contains the path.
+        return fetchFilePatch(token, firstPage, path)
+                .expand(page -> page.found() || page.next() == null
+                        ? Mono.empty()
+                        : fetchFilePatch(token, page.next(), path))
+                .filter(FilePatchPage::found)
+                .next()
+                .flatMapMany(page -> page.patch() == null
+                        ? Flux.empty()
+                        : Flux.fromStream(() -> page.patch().lines())
+                                .filter(line -> line.startsWith("+") && !line.startsWith("+++"))
+                                .map(line -> line.substring(1)));
+    }
+
+    /**
+     * Stream one page of a commit response through a JSON parser, looking for the entry of {@code path}
+     * in {@code files}. Other files are skipped token by token and the download is cancelled once found.
+     */
+    private Mono<FilePatchPage> fetchFilePatch(String token, URI uri, String path) {
         return webClient.get()
-                .uri(String.format("https://api.github.com/repos/%s/%s/commits/%s", owner, repo, commitSha))
+                .uri(uri)
                 .header(HttpHeaders.AUTHORIZATION, "token " + token)
-                .retrieve()
-                .bodyToMono(Object.class)
-                .flatMapMany(obj -> {
-                    java.util.Map<?, ?> commit = objectMapper.convertValue(obj, java.util.Map.class);
-                    java.util.List<?> files = (java.util.List<?>) commit.get("files");
-                    if (files == null) return Flux.empty();
-                    return Flux.fromIterable(files)
-                            .map(fileObj -> objectMapper.convertValue(fileObj, java.util.Map.class))
-                            .filter(file -> path.equals(file.get("filename")))
-                            .flatMap(file -> {
-                                String patch = (String) file.get("patch");
-                                if (patch == null) return Flux.empty();
-                                return Flux.fromStream(patch.lines())
-                                        .filter(line -> line.startsWith("+") && !line.startsWith("+++"))
-                                        .map(line -> line.substring(1));
-                            });
+                .accept(MediaType.APPLICATION_JSON)
+                // GitHub renders large commit diffs on demand, which can exceed the default response timeout
+                .httpRequest(WebClientConfig.responseTimeout(Duration.ofMillis(commitResponseTimeoutMs)))
+                .exchangeToMono(response -> {
+                    if (response.statusCode().isError()) {
+                        return response.createError();
+                    }
+                    URI next = nextPageLink(response.headers().asHttpHeaders().getFirst(HttpHeaders.LINK));
+                    Flux<DataBuffer> body = response.bodyToFlux(DataBuffer.class);
+                    return Mono.fromCallable(() -> {
+                                try (InputStream in = DataBufferUtils.subscriberInputStream(body, 4);
+                                     JsonParser parser = objectMapper.getFactory().createParser(in)) {
+                                    return findFilePatch(parser, path, next);
+                                }
+                            })
+                            .subscribeOn(Schedulers.boundedElastic());
                 });
     }
 
+    private static FilePatchPage findFilePatch(JsonParser parser, String path, URI next) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            return new FilePatchPage(false, null, next);
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (!"files".equals(field) || value != JsonToken.START_ARRAY) {
+                parser.skipChildren();
+                continue;
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                String filename = null;
+                String patch = null;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String fileField = parser.currentName();
+                    JsonToken fileValue = parser.nextToken();
+                    if ("filename".equals(fileField)) {
+                        filename = parser.getValueAsString();
+                    } else if ("patch".equals(fileField) && (filename == null || path.equals(filename))) {
+                        // Only decode the patch text when it may belong to the wanted file
+                        patch = parser.getValueAsString();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                if (path.equals(filename)) {
+                    return new FilePatchPage(true, patch, next);
+                }
+            }
+        }
+        return new FilePatchPage(false, null, next);
+    }
+
+    /**
+     * Walk a list endpoint page by page following the {@code Link: rel="next"} header. Pages are only
+     * requested as downstream demand reaches them, with at most {@code prefetchPages} buffered ahead.
+     */
+    private <T> Flux<T> paginate(String token, URI firstPage, ParameterizedTypeReference<List<T>> type) {
+        return getPage(token, firstPage, type)
+                .expand(page -> page.next() == null ? Mono.empty() : getPage(token, page.next(), type))
+                .concatMapIterable(Page::items, Math.max(1, prefetchPages));
+    }
+
+    private <T> Mono<Page<T>> getPage(String token, URI uri, ParameterizedTypeReference<List<T>> type) {
+        return conditionalExchange(token, uri, response -> {
+            URI next = nextPageLink(response.headers().asHttpHeaders().getFirst(HttpHeaders.LINK));
+            return response.bodyToMono(type)
+                    .map(items -> new Page<>(items, next));
+        });
+    }
+
+    private <T> Mono<T> conditionalGet(String token, URI uri, ParameterizedTypeReference<T> type) {
+        return conditionalExchange(token, uri, response -> response.bodyToMono(type));
+    }
+
+    /**
+     * GET with If-None-Match against the response cache. A 304 is served from the cached body;
+     * a fresh 200 is decoded and cached under its ETag.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> Mono<T> conditionalExchange(String token, URI uri, Function<ClientResponse, Mono<T>> decoder) {
+        String url = uri.toString();
+        return requestCoalescer.coalesce(token, url, () -> {
+            GitHubResponseCache.Entry cached = responseCache.get(token, url);
+            return webClient.get()
+                    .uri(uri)
+                    .header(HttpHeaders.AUTHORIZATION, "token " + token)
+                    .headers(headers -> {
+                        if (cached != null) {
+                            headers.setIfNoneMatch(cached.etag());
+                        }
+                    })
+                    .exchangeToMono(response -> {
+                        if (cached != null && response.statusCode().isSameCodeAs(HttpStatus.NOT_MODIFIED)) {
+                            log.debug("GitHub 304 for {}; serving cached body", url);
+                            return response.releaseBody().thenReturn((T) cached.body());
+                        }
+                        if (response.statusCode().isError()) {
+                            return response.createError();
+                        }
+                        String etag = response.headers().asHttpHeaders().getETag();
+                        return decoder.apply(response)
+                                .doOnNext(body -> responseCache.put(token, url, etag, body));
+                    });
+        });
+    }
+
+    /**
+     * Extract the rel="next" target from a GitHub Link header, e.g.
+     * {@code <https://api.github.com/user/repos?page=2>; rel="next", <...>; rel="last"}.
+     */
+    private static URI nextPageLink(String linkHeader) {
+        if (linkHeader == null || linkHeader.isEmpty()) {
+            return null;
+        }
+        for (String part : linkHeader.split(",")) {
+            int open = part.indexOf('<');
+            int close = part.indexOf('>', open + 1);
+            if (open < 0 || close < 0) {
+                continue;
+            }
+            String params = part.substring(close + 1);
+            if (params.contains("rel=\"next\"")) {
+                return URI.create(part.substring(open + 1, close).trim());
+            }
+        }
+        return null;
+    }
+
+    private record Page<T>(List<T> items, URI next) {}
+
+    private record FilePatchPage(boolean found, String patch, URI next) {}
 }
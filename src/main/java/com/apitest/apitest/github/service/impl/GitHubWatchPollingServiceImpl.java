@@ -0,0 +1,305 @@
+package com.apitest.apitest.github.service.impl;
+
+import com.apitest.apitest.github.model.dto.GitHubChangeEvent;
+import com.apitest.apitest.github.model.dto.GitHubPathRef;
+import com.apitest.apitest.github.model.dto.GitHubPollingCycleResult;
+import com.apitest.apitest.github.model.entity.GitHubFileWatch;
+import com.apitest.apitest.github.polling.GitHubPollingLeaseManager;
+import com.apitest.apitest.github.ratelimit.GitHubRateLimitGovernor;
+import com.apitest.apitest.github.repository.GitHubFileWatchRepository;
+import com.apitest.apitest.github.service.GitHubChangeEventService;
+import com.apitest.apitest.github.service.GitHubService;
+import com.apitest.apitest.github.service.GitHubWatchPollingService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Slf4j
+@Service
+public class GitHubWatchPollingServiceImpl implements GitHubWatchPollingService {
+
+    private static final int DIFF_CONCURRENCY = 4;
+
+    private final GitHubService gitHubService;
+    private final GitHubFileWatchRepository fileWatchRepository;
+    private final GitHubRateLimitGovernor rateLimitGovernor;
+    private final GitHubPollingLeaseManager leaseManager;
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final GitHubChangeEventService changeEventService;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicLong lastLagMs = new AtomicLong();
+    private final AtomicLong lastCycleTimeMs = new AtomicLong();
+    private volatile Instant lastScheduledStart;
+
+    private final Timer cycleTimer;
+    private final Counter changedCounter;
+    private final Counter failureCounter;
+
+    @Value("${github.polling.enabled:true}")
+    private boolean enabled;
+
+    @Value("${github.polling.interval-ms:60000}")
+    private long intervalMs;
+
+    @Value("${github.polling.concurrency:32}")
+    private int concurrency;
+
+    /** Resolve latest SHAs per token through batched GraphQL queries instead of one REST call per watch. */
+    @Value("${github.polling.graphql-batching:true}")
+    private boolean graphQlBatching;
+
+    @Value("${github.graphql.batch-size:50}")
+    private int batchSize;
+
+    public GitHubWatchPollingServiceImpl(GitHubService gitHubService,
+                                         GitHubFileWatchRepository fileWatchRepository,
+                                         GitHubRateLimitGovernor rateLimitGovernor,
+                                         GitHubPollingLeaseManager leaseManager,
+                                         ReactiveMongoTemplate mongoTemplate,
+                                         GitHubChangeEventService changeEventService,
+                                         MeterRegistry meterRegistry) {
+        this.gitHubService = gitHubService;
+        this.fileWatchRepository = fileWatchRepository;
+        this.rateLimitGovernor = rateLimitGovernor;
+        this.leaseManager = leaseManager;
+        this.mongoTemplate = mongoTemplate;
+        this.changeEventService = changeEventService;
+        this.cycleTimer = Timer.builder("github.polling.cycle")
+                .description("Duration of a full sweep over active file watches")
+                .register(meterRegistry);
+        this.changedCounter = Counter.builder("github.polling.changes")
+                .description("Watches whose latest commit SHA changed")
+                .register(meterRegistry);
+        this.failureCounter = Counter.builder("github.polling.failures")
+                .description("Watches that failed to poll")
+                .register(meterRegistry);
+        Gauge.builder("github.polling.lag", lastLagMs, AtomicLong::get)
+                .description("How late the last sweep started relative to its schedule, in ms")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        Gauge.builder("github.polling.cycle.last", lastCycleTimeMs, AtomicLong::get)
+                .description("Duration of the last completed sweep, in ms")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedRateString = "${github.polling.interval-ms:60000}",
+            initialDelayString = "${github.polling.initial-delay-ms:10000}")
+    public void scheduledPoll() {
+        if (!enabled) {
+            return;
+        }
+        pollOnce().subscribe(
+                result -> log.info("GitHub polling sweep: checked={} changed={} deferred={} failures={} cycleTimeMs={} lagMs={}",
+                        result.getWatchesChecked(), result.getWatchesChanged(), result.getWatchesDeferred(),
+                        result.getFailures(), result.getCycleTimeMs(), result.getLagMs()),
+                e -> log.error("GitHub polling sweep failed: {}", e.getMessage(), e));
+    }
+
+    /**
+     * All active watches, or only those in the buckets this instance leases when polling is sharded.
+     */
+    private Flux<GitHubFileWatch> activeWatches() {
+        if (!leaseManager.isEnabled()) {
+            return fileWatchRepository.findByActiveTrue();
+        }
+        Criteria owned = leaseManager.ownedWatchesCriteria();
+        if (owned == null) {
+            log.debug("No polling buckets leased yet; nothing to sweep on this instance");
+            return Flux.empty();
+        }
+        return mongoTemplate.find(new Query(new Criteria().andOperator(Criteria.where("active").is(true), owned)),
+                GitHubFileWatch.class);
+    }
+
+    @Override
+    public Mono<GitHubPollingCycleResult> pollOnce() {
+        if (!running.compareAndSet(false, true)) {
+            log.warn("Previous GitHub polling sweep still running; skipping this tick");
+            return Mono.empty();
+        }
+
+        Instant startedAt = Instant.now();
+        Instant previousStart = lastScheduledStart;
+        long lagMs = previousStart == null ? 0
+                : Math.max(0, Duration.between(previousStart.plusMillis(intervalMs), startedAt).toMillis());
+        lastScheduledStart = startedAt;
+        lastLagMs.set(lagMs);
+
+        CycleStats stats = new CycleStats();
+
+        // Batched lookups spend the GraphQL quota, per-watch lookups the REST (core) one
+        String resource = graphQlBatching ? GitHubRateLimitGovernor.GRAPHQL : GitHubRateLimitGovernor.CORE;
+        Flux<GitHubFileWatch> watches = activeWatches()
+                .filter(watch -> {
+                    // Tokens near their quota are left for a later sweep rather than holding a concurrency slot
+                    if (rateLimitGovernor.isThrottled(watch.getOauthToken(), resource)) {
+                        stats.deferred.incrementAndGet();
+                        return false;
+                    }
+                    return true;
+                });
+
+        Flux<Boolean> polled = graphQlBatching
+                ? watches.collectMultimap(GitHubFileWatch::getOauthToken)
+                        .flatMapIterable(Map::entrySet)
+                        .concatMap(entry -> Flux.fromIterable(entry.getValue())
+                                .buffer(Math.max(1, batchSize))
+                                .map(batch -> Map.entry(entry.getKey(), batch)))
+                        .flatMap(batch -> pollBatch(batch.getKey(), batch.getValue(), stats), Math.max(1, concurrency))
+                : watches.flatMap(watch -> track(watch, pollWatch(watch), stats), Math.max(1, concurrency));
+
+        return polled
+                .then(Mono.fromSupplier(() -> {
+                    Duration elapsed = Duration.between(startedAt, Instant.now());
+                    cycleTimer.record(elapsed);
+                    lastCycleTimeMs.set(elapsed.toMillis());
+                    return GitHubPollingCycleResult.builder()
+                            .startedAt(startedAt)
+                            .watchesChecked(stats.checked.get())
+                            .watchesChanged(stats.changed.get())
+                            .watchesDeferred(stats.deferred.get())
+                            .failures(stats.failures.get())
+                            .cycleTimeMs(elapsed.toMillis())
+                            .lagMs(lagMs)
+                            .build();
+                }))
+                .doFinally(signal -> running.set(false));
+    }
+
+    /**
+     * Resolve the latest SHAs of a batch of watches sharing one token with a single batched lookup,
+     * then apply each result. Watches on the same (repo, branch, path) share one lookup item.
+     */
+    private Flux<Boolean> pollBatch(String token, List<GitHubFileWatch> batch, CycleStats stats) {
+        Map<GitHubPathRef, List<GitHubFileWatch>> byRef = new LinkedHashMap<>();
+        for (GitHubFileWatch watch : batch) {
+            byRef.computeIfAbsent(refOf(watch), ref -> new ArrayList<>()).add(watch);
+        }
+        return gitHubService.getLatestCommitShasForPaths(token, new ArrayList<>(byRef.keySet()))
+                .flatMapMany(shas -> Flux.fromIterable(byRef.entrySet())
+                        .flatMapIterable(entry -> entry.getValue().stream()
+                                .map(watch -> Map.entry(watch, Optional.ofNullable(shas.get(entry.getKey()))))
+                                .toList())
+                        .flatMap(entry -> track(entry.getKey(),
+                                entry.getValue().map(sha -> applySha(entry.getKey(), sha)).orElse(Mono.just(false)),
+                                stats), DIFF_CONCURRENCY))
+                .onErrorResume(e -> {
+                    stats.failures.addAndGet(batch.size());
+                    failureCounter.increment(batch.size());
+                    log.warn("Polling batch of {} watches failed: {}", batch.size(), e.getMessage());
+                    return Flux.empty();
+                });
+    }
+
+    private Mono<Boolean> track(GitHubFileWatch watch, Mono<Boolean> poll, CycleStats stats) {
+        return poll
+                .doOnNext(isChanged -> {
+                    stats.checked.incrementAndGet();
+                    if (isChanged) {
+                        stats.changed.incrementAndGet();
+                        changedCounter.increment();
+                    }
+                })
+                .onErrorResume(e -> {
+                    stats.failures.incrementAndGet();
+                    failureCounter.increment();
+                    log.warn("Polling watch {} ({}/{}:{}) failed: {}", watch.getId(), watch.getOwner(),
+                            watch.getRepo(), watch.getPath(), e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    private Mono<Boolean> pollWatch(GitHubFileWatch watch) {
+        return gitHubService.getLatestCommitShaForPath(watch.getOauthToken(), watch.getOwner(), watch.getRepo(),
+                        watch.getBranch(), watch.getPath())
+                .flatMap(sha -> applySha(watch, sha))
+                .defaultIfEmpty(false);
+    }
+
+    /**
+     * Emits true when the watch moved to a new commit, false when it is unchanged.
+     */
+    private Mono<Boolean> applySha(GitHubFileWatch watch, String sha) {
+        if (sha.equals(watch.getLastSeenSha())) {
+            return Mono.just(false);
+        }
+
+        String previousSha = watch.getLastSeenSha();
+        watch.setLastSeenSha(sha);
+        watch.setLastCheckedAt(Instant.now());
+
+        if (previousSha == null) {
+            // First observation only records the baseline; there is nothing to diff against yet.
+            return savePollingState(watch).thenReturn(false);
+        }
+
+        return gitHubService.getAddedLinesInCommitForPath(watch.getOauthToken(), watch.getOwner(),
+                        watch.getRepo(), sha, watch.getPath())
+                .collectList()
+                .doOnNext(addedLines -> log.info("watch {} {}/{}:{} changed {} -> {} (+{} lines)",
+                        watch.getId(), watch.getOwner(), watch.getRepo(), watch.getPath(),
+                        previousSha, sha, addedLines.size()))
+                .doOnNext(addedLines -> changeEventService.publish(GitHubChangeEvent.builder()
+                        .watchId(watch.getId())
+                        .userId(watch.getUserId())
+                        .owner(watch.getOwner())
+                        .repo(watch.getRepo())
+                        .branch(watch.getBranch())
+                        .path(watch.getPath())
+                        .sha(sha)
+                        .previousSha(previousSha)
+                        .addedLines(addedLines)
+                        .source("polling")
+                        .detectedAt(Instant.now())
+                        .build()))
+                .then(savePollingState(watch))
+                .thenReturn(true);
+    }
+
+    /**
+     * Write only the fields polling owns. The watch was loaded at the start of the sweep, so saving the
+     * whole document would revert any edit the user made meanwhile (deactivation, a new path).
+     */
+    private Mono<Void> savePollingState(GitHubFileWatch watch) {
+        return mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(watch.getId())),
+                        new Update()
+                                .set("lastSeenSha", watch.getLastSeenSha())
+                                .set("lastCheckedAt", watch.getLastCheckedAt()),
+                        GitHubFileWatch.class)
+                .then();
+    }
+
+    private static GitHubPathRef refOf(GitHubFileWatch watch) {
+        return new GitHubPathRef(watch.getOwner(), watch.getRepo(), watch.getBranch(), watch.getPath());
+    }
+
+    private static final class CycleStats {
+        private final AtomicLong checked = new AtomicLong();
+        private final AtomicLong changed = new AtomicLong();
+        private final AtomicLong deferred = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+    }
+}
@@ -0,0 +1,192 @@
+package com.apitest.apitest.github.service.impl;
+
+import com.apitest.apitest.github.model.dto.GitHubPushEvent;
+import com.apitest.apitest.github.model.entity.GitHubWebhookDelivery;
+import com.apitest.apitest.github.repository.GitHubWebhookDeliveryRepository;
+import com.apitest.apitest.github.service.GitHubWebhookQueueService;
+import com.apitest.apitest.github.service.GitHubWebhookService;
+import com.apitest.apitest.util.RetryBackoff;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Slf4j
+@Service
+public class GitHubWebhookQueueServiceImpl implements GitHubWebhookQueueService {
+
+    private final GitHubWebhookDeliveryRepository deliveryRepository;
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final GitHubWebhookService webhookService;
+
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    private final AtomicLong pendingGauge = new AtomicLong();
+
+    @Value("${github.webhook.queue.batch-size:100}")
+    private int batchSize;
+
+    @Value("${github.webhook.queue.workers:8}")
+    private int workers;
+
+    @Value("${github.webhook.queue.lease-ms:60000}")
+    private long leaseMs;
+
+    @Value("${github.webhook.queue.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${github.webhook.queue.backoff-initial-ms:2000}")
+    private long backoffInitialMs;
+
+    @Value("${github.webhook.queue.backoff-max-ms:300000}")
+    private long backoffMaxMs;
+
+    public GitHubWebhookQueueServiceImpl(GitHubWebhookDeliveryRepository deliveryRepository,
+                                         ReactiveMongoTemplate mongoTemplate,
+                                         GitHubWebhookService webhookService,
+                                         MeterRegistry meterRegistry) {
+        this.deliveryRepository = deliveryRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.webhookService = webhookService;
+        Gauge.builder("github.webhook.queue.pending", pendingGauge, AtomicLong::get)
+                .description("Webhook deliveries waiting to be processed")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Mono<Boolean> enqueue(String deliveryId, String event, byte[] payload) {
+        Instant now = Instant.now();
+        GitHubWebhookDelivery delivery = GitHubWebhookDelivery.builder()
+                .deliveryId(deliveryId)
+                .event(event)
+                .payload(payload)
+                .receivedAt(now)
+                .nextAttemptAt(now)
+                .build();
+        return deliveryRepository.insert(delivery)
+                .thenReturn(true)
+                .onErrorResume(DuplicateKeyException.class, e -> {
+                    log.debug("Duplicate webhook delivery {} ignored", deliveryId);
+                    return Mono.just(false);
+                });
+    }
+
+    @Scheduled(fixedDelayString = "${github.webhook.queue.poll-interval-ms:1000}")
+    public void scheduledDrain() {
+        if (!draining.compareAndSet(false, true)) {
+            return;
+        }
+        drain()
+                .then(deliveryRepository.countByStatus(GitHubWebhookDelivery.Status.PENDING))
+                .doFinally(signal -> draining.set(false))
+                .subscribe(pendingGauge::set, e -> log.error("Webhook queue drain failed: {}", e.getMessage(), e));
+    }
+
+    @Override
+    public Mono<Long> drain() {
+        return drainBatch()
+                .expand(processed -> processed >= batchSize ? drainBatch() : Mono.empty())
+                .reduce(0L, Long::sum);
+    }
+
+    private Mono<Long> drainBatch() {
+        return claimBatch()
+                .flatMap(this::process, Math.max(1, workers))
+                .count();
+    }
+
+    /**
+     * Claim up to a batch, one lease at a time, stopping at the first empty claim so an idle queue
+     * costs a single round trip per tick.
+     */
+    private Flux<GitHubWebhookDelivery> claimBatch() {
+        AtomicBoolean exhausted = new AtomicBoolean(false);
+        return Mono.defer(this::claimNext)
+                .switchIfEmpty(Mono.fromRunnable(() -> exhausted.set(true)))
+                .repeat(Math.max(0, batchSize - 1), () -> !exhausted.get());
+    }
+
+    /**
+     * Atomically lease the oldest pending delivery that is due, or one whose previous lease expired
+     * (e.g. the worker holding it was restarted).
+     */
+    private Mono<GitHubWebhookDelivery> claimNext() {
+        Instant now = Instant.now();
+        Query query = new Query(new Criteria().orOperator(
+                Criteria.where("status").is(GitHubWebhookDelivery.Status.PENDING).orOperator(
+                        Criteria.where("nextAttemptAt").is(null), Criteria.where("nextAttemptAt").lte(now)),
+                Criteria.where("status").is(GitHubWebhookDelivery.Status.PROCESSING).and("lockedUntil").lt(now)))
+                .with(Sort.by(Sort.Direction.ASC, "receivedAt"));
+        Update update = new Update()
+                .set("status", GitHubWebhookDelivery.Status.PROCESSING)
+                .set("lockedUntil", now.plus(Duration.ofMillis(leaseMs)))
+                .inc("attempts", 1);
+        return mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true),
+                GitHubWebhookDelivery.class);
+    }
+
+    private Mono<GitHubWebhookDelivery> process(GitHubWebhookDelivery delivery) {
+        return Mono.defer(() -> {
+                    if (!"push".equals(delivery.getEvent())) {
+                        return Mono.empty();
+                    }
+                    try {
+                        GitHubPushEvent event = webhookService.parsePush(delivery.getPayload());
+                        if (!event.hasKeyFields()) {
+                            log.info("Webhook delivery {} is missing key fields; skipping", delivery.getDeliveryId());
+                            return Mono.empty();
+                        }
+                        return webhookService.handlePush(event);
+                    } catch (Exception e) {
+                        return Mono.error(e);
+                    }
+                })
+                .then(Mono.defer(() -> markDone(delivery)))
+                .onErrorResume(e -> markFailed(delivery, e));
+    }
+
+    private Mono<GitHubWebhookDelivery> markDone(GitHubWebhookDelivery delivery) {
+        delivery.setStatus(GitHubWebhookDelivery.Status.DONE);
+        delivery.setProcessedAt(Instant.now());
+        delivery.setLockedUntil(null);
+        delivery.setLastError(null);
+        // The payload is no longer needed; the document stays only to dedupe redeliveries.
+        delivery.setPayload(null);
+        return deliveryRepository.save(delivery);
+    }
+
+    private Mono<GitHubWebhookDelivery> markFailed(GitHubWebhookDelivery delivery, Throwable e) {
+        boolean exhausted = delivery.getAttempts() >= maxAttempts;
+        if (exhausted) {
+            log.warn("Webhook delivery {} failed (attempt {}, giving up): {}", delivery.getDeliveryId(),
+                    delivery.getAttempts(), e.getMessage());
+            delivery.setStatus(GitHubWebhookDelivery.Status.FAILED);
+        } else {
+            // Without a delay the next tick would reclaim it at once and burn every attempt within seconds
+            Duration delay = RetryBackoff.withJitter(delivery.getAttempts(), Duration.ofMillis(backoffInitialMs),
+                    Duration.ofMillis(backoffMaxMs));
+            log.warn("Webhook delivery {} failed (attempt {}), retrying in {} ms: {}", delivery.getDeliveryId(),
+                    delivery.getAttempts(), delay.toMillis(), e.getMessage());
+            delivery.setStatus(GitHubWebhookDelivery.Status.PENDING);
+            delivery.setNextAttemptAt(Instant.now().plus(delay));
+        }
+        delivery.setLockedUntil(null);
+        delivery.setLastError(e.getMessage());
+        return deliveryRepository.save(delivery);
+    }
+}
@@ -0,0 +1,236 @@
+package com.apitest.apitest.github.service.impl;
+
+import com.apitest.apitest.github.index.GitHubWatchIndex;
+import com.apitest.apitest.github.model.dto.GitHubChangeEvent;
+import com.apitest.apitest.github.model.dto.GitHubPushEvent;
+import com.apitest.apitest.github.model.entity.GitHubFileWatch;
+import com.apitest.apitest.github.service.GitHubChangeEventService;
+import com.apitest.apitest.github.service.GitHubService;
+import com.apitest.apitest.github.service.GitHubWebhookService;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class GitHubWebhookServiceImpl implements GitHubWebhookService {
+
+    private final ObjectMapper objectMapper;
+    private final GitHubWatchIndex watchIndex;
+    private final GitHubService gitHubService;
+    private final GitHubChangeEventService changeEventService;
+
+    /**
+     * Single forward pass with the streaming parser. Only ref, repository name/owner and the
+     * commit fields below are read; every other subtree is skipped without being materialised.
+     */
+    @Override
+    public GitHubPushEvent parsePush(byte[] payload) throws IOException {
+        GitHubPushEvent event = new GitHubPushEvent();
+        try (JsonParser parser = objectMapper.getFactory().createParser(payload)) {
+            expect(parser.nextToken(), JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "ref" -> event.setRef(textOrEmpty(parser, value));
+                    case "repository" -> readRepository(parser, value, event);
+                    case "commits" -> readCommits(parser, value, event.getCommits());
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+        if (event.getRef() == null) event.setRef("");
+        if (event.getOwner() == null) event.setOwner("");
+        if (event.getRepo() == null) event.setRepo("");
+        return event;
+    }
+
+    @Override
+    public Mono<Void> handlePush(GitHubPushEvent event) {
+        return Mono.fromRunnable(() -> {
+            for (GitHubPushEvent.Commit commit : event.getCommits()) {
+                log.info("push on {} {}:{} sha={} by {} <{}> added={} modified={}", event.getRef(), event.getOwner(),
+                        event.getRepo(), commit.getId(), commit.getAuthorLogin(), commit.getAuthorEmail(),
+                        commit.getAdded(), commit.getModified());
+
+                Set<GitHubFileWatch> matches = watchIndex.match(event.getOwner(), event.getRepo(), event.getRef(),
+                        changedPaths(commit));
+                for (GitHubFileWatch watch : matches) {
+                    log.info("push sha={} matches watch {} (user {}) on {}", commit.getId(), watch.getId(),
+                            watch.getUserId(), watch.getPath());
+                }
+                publishChanges(event, commit, matches);
+            }
+        });
+    }
+
+    /**
+     * Fetch added lines for matched watches whose users are listening and push them to their streams.
+     * Runs detached so webhook handling never waits on GitHub or on subscribers.
+     */
+    private void publishChanges(GitHubPushEvent event, GitHubPushEvent.Commit commit, Set<GitHubFileWatch> matches) {
+        Flux.fromIterable(matches)
+                .filter(watch -> changeEventService.hasSubscribers(watch.getUserId()))
+                .flatMap(watch -> Flux.fromIterable(matchedPaths(event, commit, watch))
+                        .concatMap(path -> gitHubService.getAddedLinesInCommitForPath(watch.getOauthToken(),
+                                event.getOwner(), event.getRepo(), commit.getId(), path))
+                        .collectList()
+                        .doOnNext(addedLines -> changeEventService.publish(GitHubChangeEvent.builder()
+                                .watchId(watch.getId())
+                                .userId(watch.getUserId())
+                                .owner(event.getOwner())
+                                .repo(event.getRepo())
+                                .branch(event.getRef())
+                                .path(watch.getPath())
+                                .sha(commit.getId())
+                                .author(commit.getAuthorLogin())
+                                .addedLines(addedLines)
+                                .source("webhook")
+                                .detectedAt(Instant.now())
+                                .build()))
+                        .onErrorResume(e -> {
+                            log.warn("Could not publish change for watch {} at {}: {}", watch.getId(),
+                                    commit.getId(), e.getMessage());
+                            return Mono.empty();
+                        }), 4)
+                .subscribe();
+    }
+
+    /**
+     * The commit's files covered by the watch: the watch path itself when it is a file, otherwise each
+     * changed file under the watched directory or glob.
+     */
+    private List<String> matchedPaths(GitHubPushEvent event, GitHubPushEvent.Commit commit, GitHubFileWatch watch) {
+        List<String> paths = changedPaths(commit);
+        if (paths.contains(watch.getPath())) {
+            return List.of(watch.getPath());
+        }
+        List<String> matched = new ArrayList<>();
+        for (String path : paths) {
+            if (watchIndex.match(event.getOwner(), event.getRepo(), event.getRef(), List.of(path)).contains(watch)) {
+                matched.add(path);
+            }
+        }
+        return matched;
+    }
+
+    private static List<String> changedPaths(GitHubPushEvent.Commit commit) {
+        if (commit.getModified().isEmpty()) {
+            return commit.getAdded();
+        }
+        if (commit.getAdded().isEmpty()) {
+            return commit.getModified();
+        }
+        List<String> paths = new ArrayList<>(commit.getAdded().size() + commit.getModified().size());
+        paths.addAll(commit.getAdded());
+        paths.addAll(commit.getModified());
+        return paths;
+    }
+
+    private static void readRepository(JsonParser parser, JsonToken token, GitHubPushEvent event) throws IOException {
+        if (token != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("name".equals(field)) {
+                event.setRepo(textOrEmpty(parser, value));
+            } else if ("owner".equals(field) && value == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String ownerField = parser.currentName();
+                    JsonToken ownerValue = parser.nextToken();
+                    if ("login".equals(ownerField)) {
+                        event.setOwner(textOrEmpty(parser, ownerValue));
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private static void readCommits(JsonParser parser, JsonToken token, List<GitHubPushEvent.Commit> commits) throws IOException {
+        if (token != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            GitHubPushEvent.Commit commit = new GitHubPushEvent.Commit();
+            String username = "";
+            String name = "";
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "id" -> commit.setId(textOrEmpty(parser, value));
+                    case "added" -> readStrings(parser, value, commit.getAdded());
+                    case "modified" -> readStrings(parser, value, commit.getModified());
+                    case "author" -> {
+                        if (value != JsonToken.START_OBJECT) {
+                            parser.skipChildren();
+                            break;
+                        }
+                        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                            String authorField = parser.currentName();
+                            JsonToken authorValue = parser.nextToken();
+                            switch (authorField) {
+                                case "username" -> username = textOrEmpty(parser, authorValue);
+                                case "name" -> name = textOrEmpty(parser, authorValue);
+                                case "email" -> commit.setAuthorEmail(textOrEmpty(parser, authorValue));
+                                default -> parser.skipChildren();
+                            }
+                        }
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+            if (commit.getId() == null) commit.setId("");
+            if (commit.getAuthorEmail() == null) commit.setAuthorEmail("");
+            commit.setAuthorLogin(username.isEmpty() ? name : username);
+            commits.add(commit);
+        }
+    }
+
+    private static void readStrings(JsonParser parser, JsonToken token, List<String> target) throws IOException {
+        if (token != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            target.add(parser.getValueAsString());
+        }
+    }
+
+    private static String textOrEmpty(JsonParser parser, JsonToken token) throws IOException {
+        if (token.isStructStart()) {
+            parser.skipChildren();
+            return "";
+        }
+        String text = parser.getValueAsString();
+        return text != null ? text : "";
+    }
+
+    private static void expect(JsonToken actual, JsonToken expected) throws IOException {
+        if (actual != expected) {
+            throw new JsonParseException(null, "Expected " + expected + " but found " + actual);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.apitest.apitest.mailjet.config;
+
+import com.mailjet.client.ClientOptions;
+import com.mailjet.client.MailjetClient;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class MailjetClientConfig {
+
+    @Value("${mailjet.api.key}")
+    private String apiKey;
+
+    @Value("${mailjet.api.secret}")
+    private String apiSecret;
+
+    @Value("${mailjet.client.max-idle-connections:20}")
+    private int maxIdleConnections;
+
+    @Value("${mailjet.client.keep-alive-ms:300000}")
+    private long keepAliveMs;
+
+    @Value("${mailjet.client.max-requests:64}")
+    private int maxRequests;
+
+    @Value("${mailjet.client.connect-timeout-ms:5000}")
+    private long connectTimeoutMs;
+
+    @Value("${mailjet.client.read-timeout-ms:30000}")
+    private long readTimeoutMs;
+
+    /**
+     * One client for the whole application so connections (and their TLS sessions) to
+     * api.mailjet.com are kept alive and reused across sends.
+     */
+    @Bean
+    public MailjetClient mailjetClient() {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequests);
+
+        OkHttpClient okHttpClient = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(maxIdleConnections, keepAliveMs, TimeUnit.MILLISECONDS))
+                .dispatcher(dispatcher)
+                .connectTimeout(connectTimeoutMs, TimeUnit.MILLISECONDS)
+                .readTimeout(readTimeoutMs, TimeUnit.MILLISECONDS)
+                .writeTimeout(readTimeoutMs, TimeUnit.MILLISECONDS)
+                .build();
+
+        return new MailjetClient(ClientOptions.builder()
+                .apiKey(apiKey)
+                .apiSecretKey(apiSecret)
+                .okHttpClient(okHttpClient)
+                .build());
+    }
+}
@@ -1,15 +1,26 @@
 package com.apitest.apitest.mailjet.controller;
 
+import com.apitest.apitest.mailjet.model.dto.BulkEmailResponseDTO;
+import com.apitest.apitest.mailjet.model.dto.EmailOutboxResponseDTO;
 import com.apitest.apitest.mailjet.model.dto.EmailRequestDTO;
 import com.apitest.apitest.mailjet.model.dto.EmailResponseDTO;
+import com.apitest.apitest.mailjet.service.EmailOutboxService;
 import com.apitest.apitest.mailjet.service.MailjetService;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/email")
@@ -18,39 +29,106 @@ public class EmailController {
     
     private static final Logger logger = LoggerFactory.getLogger(EmailController.class);
     
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+    
     @Autowired
     private MailjetService mailjetService;
     
+    @Autowired
+    private EmailOutboxService emailOutboxService;
+    
+    @Value("${mailjet.batch.max-bulk-size:1000}")
+    private int maxBulkSize;
+    
     @PostMapping("/send")
-    public ResponseEntity<EmailResponseDTO> sendEmail(@Valid @RequestBody EmailRequestDTO emailRequest) {
-        try {
-            logger.info("Received email send request: {}", emailRequest);
-            
-            // Check if Mailjet is configured
-            if (!mailjetService.isConfigured()) {
-                logger.error("Mailjet service is not properly configured");
-                EmailResponseDTO errorResponse = EmailResponseDTO.error(
-                    "Email service is not configured. Please check your Mailjet API credentials.");
-                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(errorResponse);
-            }
-            
-            // Send email
-            EmailResponseDTO response = mailjetService.sendEmail(emailRequest);
-            
-            if (response.isSuccess()) {
-                logger.info("Email sent successfully to: {}", emailRequest.getTo());
-                return ResponseEntity.ok(response);
-            } else {
+    public CompletableFuture<ResponseEntity<?>> sendEmail(
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @Valid @RequestBody EmailRequestDTO emailRequest) {
+        logger.info("Received email send request: {}", emailRequest);
+        
+        // With an idempotency key the email goes through the durable outbox and is sent by the retry worker
+        if (idempotencyKey != null) {
+            return enqueue(idempotencyKey, emailRequest);
+        }
+        
+        // Check if Mailjet is configured
+        if (!mailjetService.isConfigured()) {
+            logger.error("Mailjet service is not properly configured");
+            EmailResponseDTO errorResponse = EmailResponseDTO.error(
+                "Email service is not configured. Please check your Mailjet API credentials.");
+            return CompletableFuture.completedFuture(
+                ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(errorResponse));
+        }
+        
+        // Send email; the servlet thread is released while Mailjet is called
+        return mailjetService.sendEmailAsync(emailRequest)
+            .<ResponseEntity<?>>thenApply(response -> {
+                if (response.isSuccess()) {
+                    logger.info("Email sent successfully to: {}", emailRequest.getTo());
+                    return ResponseEntity.ok(response);
+                }
                 logger.error("Failed to send email: {}", response.getMessage());
                 return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
-            }
-            
-        } catch (Exception e) {
-            logger.error("Unexpected error in email controller", e);
-            EmailResponseDTO errorResponse = EmailResponseDTO.error(
-                "Internal server error: " + e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+            })
+            .exceptionally(e -> {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                if (cause instanceof RejectedExecutionException) {
+                    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .body(EmailResponseDTO.error("Email service is busy, please retry later"));
+                }
+                logger.error("Unexpected error in email controller", cause);
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(EmailResponseDTO.error("Internal server error: " + cause.getMessage()));
+            });
+    }
+    
+    private CompletableFuture<ResponseEntity<?>> enqueue(String idempotencyKey, EmailRequestDTO emailRequest) {
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(EmailResponseDTO.error(
+                "Idempotency-Key must be 1 to " + MAX_IDEMPOTENCY_KEY_LENGTH + " characters")));
         }
+        return emailOutboxService.enqueue(idempotencyKey, emailRequest)
+            .<ResponseEntity<?>>map(queued -> ResponseEntity.status(HttpStatus.ACCEPTED).body(queued))
+            .onErrorResume(e -> {
+                logger.error("Failed to queue email {}: {}", idempotencyKey, e.getMessage());
+                return Mono.just(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(EmailResponseDTO.error("Failed to queue email: " + e.getMessage())));
+            })
+            .toFuture();
+    }
+    
+    @GetMapping("/outbox/{idempotencyKey}")
+    public Mono<ResponseEntity<EmailOutboxResponseDTO>> getOutboxStatus(@PathVariable String idempotencyKey) {
+        return emailOutboxService.status(idempotencyKey)
+            .map(ResponseEntity::ok)
+            .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+    
+    @PostMapping("/send/bulk")
+    public CompletableFuture<ResponseEntity<BulkEmailResponseDTO>> sendBulkEmail(
+            @RequestBody List<@Valid EmailRequestDTO> emailRequests) {
+        logger.info("Received bulk email send request for {} emails", emailRequests.size());
+        
+        if (!mailjetService.isConfigured()) {
+            logger.error("Mailjet service is not properly configured");
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(BulkEmailResponseDTO.of(Collections.nCopies(emailRequests.size(), EmailResponseDTO.error(
+                    "Email service is not configured. Please check your Mailjet API credentials.")))));
+        }
+        
+        if (emailRequests.isEmpty() || emailRequests.size() > maxBulkSize) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(BulkEmailResponseDTO.of(List.of(EmailResponseDTO.error(
+                    "Bulk request must contain between 1 and " + maxBulkSize + " emails")))));
+        }
+        
+        return mailjetService.sendBulkAsync(emailRequests)
+            .thenApply(results -> {
+                BulkEmailResponseDTO response = BulkEmailResponseDTO.of(results);
+                logger.info("Bulk email finished: {} sent, {} failed", response.getSent(), response.getFailed());
+                // Per-email outcomes are in the body; the request as a whole was processed
+                return ResponseEntity.ok(response);
+            });
     }
     
     @GetMapping("/health")
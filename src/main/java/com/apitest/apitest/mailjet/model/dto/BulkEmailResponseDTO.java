@@ -0,0 +1,24 @@
+package com.apitest.apitest.mailjet.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkEmailResponseDTO {
+
+    private int total;
+    private int sent;
+    private int failed;
+    // One entry per requested email, in request order
+    private List<EmailResponseDTO> results;
+
+    public static BulkEmailResponseDTO of(List<EmailResponseDTO> results) {
+        int sent = (int) results.stream().filter(EmailResponseDTO::isSuccess).count();
+        return new BulkEmailResponseDTO(results.size(), sent, results.size() - sent, results);
+    }
+}
@@ -0,0 +1,25 @@
+package com.apitest.apitest.mailjet.model.dto;
+
+import com.apitest.apitest.mailjet.model.entity.EmailOutboxMessage;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EmailOutboxResponseDTO {
+
+    private String idempotencyKey;
+    private EmailOutboxMessage.Status status;
+    private int attempts;
+    private String messageId;
+    private String lastError;
+    // True when the key was already known and this request was collapsed into the earlier one
+    private boolean duplicate;
+
+    public static EmailOutboxResponseDTO of(EmailOutboxMessage message, boolean duplicate) {
+        return new EmailOutboxResponseDTO(message.getIdempotencyKey(), message.getStatus(), message.getAttempts(),
+            message.getMessageId(), message.getLastError(), duplicate);
+    }
+}
@@ -7,6 +7,8 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.Map;
+
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -21,4 +23,14 @@ public class EmailRequestDTO {
 
     @NotBlank(message = "Body is required")
     private String body;
+
+    // Optional name of a template under mailjet.templates.location; the default layout is used when absent
+    private String templateName;
+
+    // Per-recipient values for the template's {{variables}}
+    private Map<String, String> variables;
+
+    public EmailRequestDTO(String to, String subject, String body) {
+        this(to, subject, body, null, null);
+    }
 }
\ No newline at end of file
@@ -11,6 +11,8 @@ public class EmailResponseDTO {
     private String message;
     private String messageId;
     private long timestamp;
+    // True when retrying cannot help, e.g. a broken template or an address Mailjet rejected
+    private boolean permanent;
 
     // Constructor for success response
     public EmailResponseDTO(boolean success, String message, String messageId) {
@@ -36,6 +38,12 @@ public class EmailResponseDTO {
         return new EmailResponseDTO(false, errorMessage);
     }
 
+    public static EmailResponseDTO permanentError(String errorMessage) {
+        EmailResponseDTO response = new EmailResponseDTO(false, errorMessage);
+        response.permanent = true;
+        return response;
+    }
+
     // Custom setter to automatically set timestamp
     public void setSuccess(boolean success) {
         this.success = success;
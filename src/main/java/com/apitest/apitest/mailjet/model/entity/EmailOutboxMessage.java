@@ -0,0 +1,54 @@
+package com.apitest.apitest.mailjet.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * An email accepted by the API and waiting to be sent. The id is the caller's Idempotency-Key,
+ * so a retried request collides on insert and maps to the original message.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "email_outbox")
+@CompoundIndex(name = "status_next_attempt", def = "{'status': 1, 'nextAttemptAt': 1}")
+public class EmailOutboxMessage {
+    @Id
+    private String idempotencyKey;
+    private String to;
+    private String subject;
+    private String body;
+    private String templateName;
+    private Map<String, String> variables;
+
+    @Builder.Default
+    private Status status = Status.PENDING;
+    private int attempts;
+    private String lastError;
+    private String messageId;
+    private Instant createdAt;
+    /** Earliest time the next attempt may run; pushed back exponentially after each failure. */
+    private Instant nextAttemptAt;
+    /** Lease held by the worker sending the message; expired leases are reclaimed. */
+    private Instant lockedUntil;
+
+    /** Sent messages expire after a week; until then they keep deduplicating retried requests. */
+    @Indexed(expireAfter = "7d")
+    private Instant sentAt;
+
+    public enum Status {
+        PENDING, SENDING, SENT,
+        /** Gave up after a permanent error or the maximum number of attempts; kept for inspection and manual replay. */
+        DEAD_LETTER
+    }
+}
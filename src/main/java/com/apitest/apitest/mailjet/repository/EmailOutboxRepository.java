@@ -0,0 +1,12 @@
+package com.apitest.apitest.mailjet.repository;
+
+import com.apitest.apitest.mailjet.model.entity.EmailOutboxMessage;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+@Repository
+public interface EmailOutboxRepository extends ReactiveMongoRepository<EmailOutboxMessage, String> {
+
+    Mono<Long> countByStatus(EmailOutboxMessage.Status status);
+}
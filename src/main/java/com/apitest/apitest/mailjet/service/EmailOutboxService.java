@@ -0,0 +1,21 @@
+package com.apitest.apitest.mailjet.service;
+
+import com.apitest.apitest.mailjet.model.dto.EmailOutboxResponseDTO;
+import com.apitest.apitest.mailjet.model.dto.EmailRequestDTO;
+import reactor.core.publisher.Mono;
+
+public interface EmailOutboxService {
+    
+    /**
+     * Persist the email for delivery by the outbox worker. A key that was seen before is not queued
+     * again; the existing message is returned with {@code duplicate} set.
+     */
+    Mono<EmailOutboxResponseDTO> enqueue(String idempotencyKey, EmailRequestDTO emailRequest);
+    
+    Mono<EmailOutboxResponseDTO> status(String idempotencyKey);
+    
+    /**
+     * Send every message that is due, returning how many were attempted.
+     */
+    Mono<Long> drain();
+}
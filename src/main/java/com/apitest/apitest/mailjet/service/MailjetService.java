@@ -3,9 +3,25 @@ package com.apitest.apitest.mailjet.service;
 import com.apitest.apitest.mailjet.model.dto.EmailRequestDTO;
 import com.apitest.apitest.mailjet.model.dto.EmailResponseDTO;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 public interface MailjetService {
     
     EmailResponseDTO sendEmail(EmailRequestDTO emailRequest);
     
+    /**
+     * Send on the bounded Mailjet executor without blocking the caller. Send failures complete with an
+     * error response; a saturated executor completes exceptionally with a RejectedExecutionException.
+     * When micro-batching is enabled the email may share one Send API call with other concurrent sends.
+     */
+    CompletableFuture<EmailResponseDTO> sendEmailAsync(EmailRequestDTO emailRequest);
+    
+    /**
+     * Send many emails packed into as few Send API v3.1 calls as possible. Results are returned in
+     * request order, one per email.
+     */
+    CompletableFuture<List<EmailResponseDTO>> sendBulkAsync(List<EmailRequestDTO> emailRequests);
+    
     boolean isConfigured();
 }
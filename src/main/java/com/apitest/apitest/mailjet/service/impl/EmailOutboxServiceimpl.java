@@ -0,0 +1,233 @@
+package com.apitest.apitest.mailjet.service.impl;
+
+import com.apitest.apitest.mailjet.model.dto.EmailOutboxResponseDTO;
+import com.apitest.apitest.mailjet.model.dto.EmailRequestDTO;
+import com.apitest.apitest.mailjet.model.dto.EmailResponseDTO;
+import com.apitest.apitest.mailjet.model.entity.EmailOutboxMessage;
+import com.apitest.apitest.mailjet.repository.EmailOutboxRepository;
+import com.apitest.apitest.mailjet.service.EmailOutboxService;
+import com.apitest.apitest.mailjet.service.MailjetService;
+import com.apitest.apitest.util.RetryBackoff;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Service
+public class EmailOutboxServiceimpl implements EmailOutboxService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(EmailOutboxServiceimpl.class);
+    
+    // Matches the Send API v3.1 per-request limit, so one claimed chunk is one Mailjet call
+    private static final int SEND_CHUNK_SIZE = 50;
+    
+    private final EmailOutboxRepository outboxRepository;
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final MailjetService mailjetService;
+    
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    private final AtomicLong pendingGauge = new AtomicLong();
+    private final AtomicLong deadLetterGauge = new AtomicLong();
+    private final Counter sentCounter;
+    private final Counter retryCounter;
+    private final Counter deadLetterCounter;
+    
+    @Value("${mailjet.outbox.batch-size:200}")
+    private int batchSize;
+    
+    @Value("${mailjet.outbox.workers:4}")
+    private int workers;
+    
+    @Value("${mailjet.outbox.lease-ms:120000}")
+    private long leaseMs;
+    
+    @Value("${mailjet.outbox.max-attempts:8}")
+    private int maxAttempts;
+    
+    @Value("${mailjet.outbox.backoff-initial-ms:2000}")
+    private long backoffInitialMs;
+    
+    @Value("${mailjet.outbox.backoff-max-ms:600000}")
+    private long backoffMaxMs;
+    
+    public EmailOutboxServiceimpl(EmailOutboxRepository outboxRepository,
+                                  ReactiveMongoTemplate mongoTemplate,
+                                  MailjetService mailjetService,
+                                  MeterRegistry meterRegistry) {
+        this.outboxRepository = outboxRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.mailjetService = mailjetService;
+        this.sentCounter = Counter.builder("mailjet.outbox.sent")
+            .description("Outbox emails delivered to Mailjet")
+            .register(meterRegistry);
+        this.retryCounter = Counter.builder("mailjet.outbox.retries")
+            .description("Outbox send attempts that failed and were rescheduled")
+            .register(meterRegistry);
+        this.deadLetterCounter = Counter.builder("mailjet.outbox.dead_lettered")
+            .description("Outbox emails given up on after a permanent error or the maximum number of attempts")
+            .register(meterRegistry);
+        Gauge.builder("mailjet.outbox.pending", pendingGauge, AtomicLong::get)
+            .description("Outbox emails waiting to be sent")
+            .register(meterRegistry);
+        Gauge.builder("mailjet.outbox.dead_letter", deadLetterGauge, AtomicLong::get)
+            .description("Outbox emails in the dead-letter state")
+            .register(meterRegistry);
+    }
+    
+    @Override
+    public Mono<EmailOutboxResponseDTO> enqueue(String idempotencyKey, EmailRequestDTO emailRequest) {
+        Instant now = Instant.now();
+        EmailOutboxMessage message = EmailOutboxMessage.builder()
+            .idempotencyKey(idempotencyKey)
+            .to(emailRequest.getTo())
+            .subject(emailRequest.getSubject())
+            .body(emailRequest.getBody())
+            .templateName(emailRequest.getTemplateName())
+            .variables(emailRequest.getVariables())
+            .createdAt(now)
+            .nextAttemptAt(now)
+            .build();
+        return outboxRepository.insert(message)
+            .map(saved -> EmailOutboxResponseDTO.of(saved, false))
+            .onErrorResume(DuplicateKeyException.class, e -> {
+                logger.debug("Duplicate idempotency key {} collapsed into the queued email", idempotencyKey);
+                return outboxRepository.findById(idempotencyKey)
+                    .map(existing -> EmailOutboxResponseDTO.of(existing, true));
+            });
+    }
+    
+    @Override
+    public Mono<EmailOutboxResponseDTO> status(String idempotencyKey) {
+        return outboxRepository.findById(idempotencyKey)
+            .map(message -> EmailOutboxResponseDTO.of(message, false));
+    }
+    
+    @Scheduled(fixedDelayString = "${mailjet.outbox.poll-interval-ms:1000}")
+    public void scheduledDrain() {
+        // Without credentials every attempt would fail and burn through the retry budget
+        if (!mailjetService.isConfigured() || !draining.compareAndSet(false, true)) {
+            return;
+        }
+        drain()
+            .then(outboxRepository.countByStatus(EmailOutboxMessage.Status.PENDING).doOnNext(pendingGauge::set))
+            .then(outboxRepository.countByStatus(EmailOutboxMessage.Status.DEAD_LETTER).doOnNext(deadLetterGauge::set))
+            .doFinally(signal -> draining.set(false))
+            .subscribe(count -> { }, e -> logger.error("Email outbox drain failed: {}", e.getMessage(), e));
+    }
+    
+    @Override
+    public Mono<Long> drain() {
+        return drainBatch()
+            .expand(processed -> processed >= batchSize ? drainBatch() : Mono.empty())
+            .reduce(0L, Long::sum);
+    }
+    
+    private Mono<Long> drainBatch() {
+        return claimBatch()
+            .buffer(SEND_CHUNK_SIZE)
+            .flatMap(this::send, Math.max(1, workers))
+            .reduce(0L, Long::sum);
+    }
+    
+    /**
+     * Claim up to a batch, one lease at a time, stopping at the first empty claim so an idle outbox
+     * costs a single round trip per tick.
+     */
+    private Flux<EmailOutboxMessage> claimBatch() {
+        AtomicBoolean exhausted = new AtomicBoolean(false);
+        return Mono.defer(this::claimNext)
+            .switchIfEmpty(Mono.fromRunnable(() -> exhausted.set(true)))
+            .repeat(Math.max(0, batchSize - 1), () -> !exhausted.get());
+    }
+    
+    /**
+     * Atomically lease the oldest message that is due, or one whose previous lease expired
+     * (e.g. the worker holding it was restarted mid-send).
+     */
+    private Mono<EmailOutboxMessage> claimNext() {
+        Instant now = Instant.now();
+        Query query = new Query(new Criteria().orOperator(
+                Criteria.where("status").is(EmailOutboxMessage.Status.PENDING).and("nextAttemptAt").lte(now),
+                Criteria.where("status").is(EmailOutboxMessage.Status.SENDING).and("lockedUntil").lt(now)))
+            .with(Sort.by(Sort.Direction.ASC, "nextAttemptAt"));
+        Update update = new Update()
+            .set("status", EmailOutboxMessage.Status.SENDING)
+            .set("lockedUntil", now.plus(Duration.ofMillis(leaseMs)))
+            .inc("attempts", 1);
+        return mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true),
+            EmailOutboxMessage.class);
+    }
+    
+    private Mono<Long> send(List<EmailOutboxMessage> chunk) {
+        List<EmailRequestDTO> requests = chunk.stream()
+            .map(message -> new EmailRequestDTO(message.getTo(), message.getSubject(), message.getBody(),
+                message.getTemplateName(), message.getVariables()))
+            .toList();
+        return Mono.fromFuture(() -> mailjetService.sendBulkAsync(requests))
+            .onErrorResume(e -> Mono.just(requests.stream()
+                .map(request -> EmailResponseDTO.error(e.getMessage()))
+                .toList()))
+            .flatMapMany(results -> Flux.range(0, chunk.size())
+                .concatMap(i -> results.get(i).isSuccess()
+                    ? markSent(chunk.get(i), results.get(i).getMessageId())
+                    : markFailed(chunk.get(i), results.get(i).getMessage(), results.get(i).isPermanent())))
+            .count();
+    }
+    
+    private Mono<EmailOutboxMessage> markSent(EmailOutboxMessage message, String messageId) {
+        sentCounter.increment();
+        message.setStatus(EmailOutboxMessage.Status.SENT);
+        message.setMessageId(messageId);
+        message.setSentAt(Instant.now());
+        message.setLockedUntil(null);
+        message.setLastError(null);
+        // The content is no longer needed; the document stays only to dedupe retried requests.
+        message.setBody(null);
+        message.setVariables(null);
+        return outboxRepository.save(message);
+    }
+    
+    /**
+     * Reschedule with backoff, or dead-letter right away when the error is permanent (a broken template,
+     * an address Mailjet rejected) or the attempts are used up.
+     */
+    private Mono<EmailOutboxMessage> markFailed(EmailOutboxMessage message, String error, boolean permanent) {
+        boolean exhausted = message.getAttempts() >= maxAttempts;
+        message.setLockedUntil(null);
+        message.setLastError(error);
+        if (permanent || exhausted) {
+            deadLetterCounter.increment();
+            message.setStatus(EmailOutboxMessage.Status.DEAD_LETTER);
+            logger.error("Outbox email {} to {} dead-lettered after {} attempt(s){}: {}", message.getIdempotencyKey(),
+                message.getTo(), message.getAttempts(), permanent ? " (permanent error)" : "", error);
+        } else {
+            retryCounter.increment();
+            Duration delay = RetryBackoff.withJitter(message.getAttempts(), Duration.ofMillis(backoffInitialMs),
+                Duration.ofMillis(backoffMaxMs));
+            message.setStatus(EmailOutboxMessage.Status.PENDING);
+            message.setNextAttemptAt(Instant.now().plus(delay));
+            logger.warn("Outbox email {} failed (attempt {}), retrying in {} ms: {}", message.getIdempotencyKey(),
+                message.getAttempts(), delay.toMillis(), error);
+        }
+        return outboxRepository.save(message);
+    }
+}
@@ -0,0 +1,116 @@
+package com.apitest.apitest.mailjet.service.impl;
+
+import com.apitest.apitest.mailjet.model.dto.EmailRequestDTO;
+import com.apitest.apitest.mailjet.model.dto.EmailResponseDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Gathers single sends for up to {@code lingerMs} and flushes them as one Send API call, or
+ * immediately once {@code maxBatchSize} are waiting. Each caller gets the result at its own
+ * position in the batch response.
+ */
+class MailjetMicroBatcher {
+    
+    private static final Logger logger = LoggerFactory.getLogger(MailjetMicroBatcher.class);
+    
+    private record Pending(EmailRequestDTO request, CompletableFuture<EmailResponseDTO> result) {
+    }
+    
+    private final Function<List<EmailRequestDTO>, List<EmailResponseDTO>> batchSender;
+    private final Executor sendExecutor;
+    private final int maxBatchSize;
+    private final long lingerMs;
+    private final ScheduledExecutorService timer;
+    
+    private final Object lock = new Object();
+    private List<Pending> pending = new ArrayList<>();
+    private ScheduledFuture<?> scheduledFlush;
+    
+    MailjetMicroBatcher(Function<List<EmailRequestDTO>, List<EmailResponseDTO>> batchSender,
+                        Executor sendExecutor, int maxBatchSize, long lingerMs) {
+        this.batchSender = batchSender;
+        this.sendExecutor = sendExecutor;
+        this.maxBatchSize = maxBatchSize;
+        this.lingerMs = lingerMs;
+        this.timer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "mailjet-batcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    CompletableFuture<EmailResponseDTO> submit(EmailRequestDTO request) {
+        CompletableFuture<EmailResponseDTO> result = new CompletableFuture<>();
+        List<Pending> full = null;
+        synchronized (lock) {
+            pending.add(new Pending(request, result));
+            if (pending.size() >= maxBatchSize) {
+                full = drainLocked();
+            } else if (scheduledFlush == null) {
+                scheduledFlush = timer.schedule(this::flush, lingerMs, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (full != null) {
+            dispatch(full);
+        }
+        return result;
+    }
+    
+    void flush() {
+        List<Pending> batch;
+        synchronized (lock) {
+            batch = drainLocked();
+        }
+        dispatch(batch);
+    }
+    
+    void shutdown() {
+        flush();
+        timer.shutdown();
+    }
+    
+    private List<Pending> drainLocked() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        List<Pending> batch = pending;
+        pending = new ArrayList<>();
+        return batch;
+    }
+    
+    private void dispatch(List<Pending> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            sendExecutor.execute(() -> send(batch));
+        } catch (RejectedExecutionException e) {
+            logger.warn("Mailjet executor saturated; rejecting micro-batch of {} emails", batch.size());
+            batch.forEach(p -> p.result().completeExceptionally(e));
+        }
+    }
+    
+    private void send(List<Pending> batch) {
+        try {
+            List<EmailResponseDTO> results = batchSender.apply(batch.stream().map(Pending::request).toList());
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).result().complete(results.get(i));
+            }
+        } catch (RuntimeException e) {
+            batch.forEach(p -> p.result().completeExceptionally(e));
+        }
+    }
+}
@@ -3,7 +3,7 @@ package com.apitest.apitest.mailjet.service.impl;
 import com.apitest.apitest.mailjet.model.dto.EmailRequestDTO;
 import com.apitest.apitest.mailjet.model.dto.EmailResponseDTO;
 import com.apitest.apitest.mailjet.service.MailjetService;
-import com.mailjet.client.ClientOptions;
+import com.apitest.apitest.mailjet.template.EmailTemplateEngine;
 import com.mailjet.client.MailjetClient;
 import com.mailjet.client.MailjetRequest;
 import com.mailjet.client.MailjetResponse;
@@ -13,14 +13,33 @@ import org.json.JSONArray;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 @Service
 public class MailjetServiceimpl implements MailjetService {
     
     private static final Logger logger = LoggerFactory.getLogger(MailjetServiceimpl.class);
     
+    // Send API v3.1 limit for the Messages array of one request
+    private static final int MAX_MESSAGES_PER_REQUEST = 50;
+    
+    private static final String DEFAULT_TEMPLATE = "default";
+    
     @Value("${mailjet.api.key}")
     private String apiKey;
     
@@ -33,67 +52,220 @@ public class MailjetServiceimpl implements MailjetService {
     @Value("${mailjet.from.name:API Test}")
     private String fromName;
     
+    private final MailjetClient client;
+    
+    private final EmailTemplateEngine templateEngine;
+    
+    // Bounded on both threads and queue: a burst beyond capacity is rejected, not parked on Tomcat threads
+    private final ThreadPoolExecutor executor;
+    
+    private final int maxBatchSize;
+    
+    // Null unless mailjet.batch.linger-ms is set; then single sends are coalesced into batch calls
+    private final MailjetMicroBatcher microBatcher;
+    
+    public MailjetServiceimpl(MailjetClient client,
+                              EmailTemplateEngine templateEngine,
+                              @Value("${mailjet.executor.core-size:8}") int coreSize,
+                              @Value("${mailjet.executor.max-size:32}") int maxSize,
+                              @Value("${mailjet.executor.queue-capacity:500}") int queueCapacity,
+                              @Value("${mailjet.batch.max-messages:50}") int maxBatchSize,
+                              @Value("${mailjet.batch.linger-ms:0}") long lingerMs) {
+        this.client = client;
+        this.templateEngine = templateEngine;
+        this.maxBatchSize = Math.max(1, Math.min(maxBatchSize, MAX_MESSAGES_PER_REQUEST));
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(coreSize, Math.max(coreSize, maxSize), 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                task -> {
+                    Thread thread = new Thread(task, "mailjet-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.microBatcher = lingerMs > 0
+            ? new MailjetMicroBatcher(this::sendBatch, executor, this.maxBatchSize, lingerMs)
+            : null;
+    }
+    
+    @Override
+    public CompletableFuture<EmailResponseDTO> sendEmailAsync(EmailRequestDTO emailRequest) {
+        if (microBatcher != null) {
+            return microBatcher.submit(emailRequest);
+        }
+        try {
+            return CompletableFuture.supplyAsync(() -> sendEmail(emailRequest), executor);
+        } catch (RejectedExecutionException e) {
+            logger.warn("Mailjet executor saturated; rejecting email to {}", emailRequest.getTo());
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+    
+    @Override
+    public CompletableFuture<List<EmailResponseDTO>> sendBulkAsync(List<EmailRequestDTO> emailRequests) {
+        List<CompletableFuture<List<EmailResponseDTO>>> chunks = new ArrayList<>();
+        for (int from = 0; from < emailRequests.size(); from += maxBatchSize) {
+            List<EmailRequestDTO> chunk = emailRequests.subList(from, Math.min(from + maxBatchSize, emailRequests.size()));
+            try {
+                chunks.add(CompletableFuture.supplyAsync(() -> sendBatch(chunk), executor));
+            } catch (RejectedExecutionException e) {
+                logger.warn("Mailjet executor saturated; rejecting bulk chunk of {} emails", chunk.size());
+                chunks.add(CompletableFuture.completedFuture(
+                    Collections.nCopies(chunk.size(), EmailResponseDTO.error("Email service is busy, please retry later"))));
+            }
+        }
+        return CompletableFuture.allOf(chunks.toArray(CompletableFuture[]::new))
+            .thenApply(done -> {
+                List<EmailResponseDTO> results = new ArrayList<>(emailRequests.size());
+                chunks.forEach(chunk -> results.addAll(chunk.join()));
+                return results;
+            });
+    }
+    
     @Override
     public EmailResponseDTO sendEmail(EmailRequestDTO emailRequest) {
+        return sendBatch(List.of(emailRequest)).get(0);
+    }
+    
+    /**
+     * Render every email, then send the ones that rendered in a single call. Emails whose template
+     * is unknown or broken fail on their own instead of failing the whole batch.
+     */
+    private List<EmailResponseDTO> sendBatch(List<EmailRequestDTO> emailRequests) {
+        EmailResponseDTO[] results = new EmailResponseDTO[emailRequests.size()];
+        List<EmailRequestDTO> sendable = new ArrayList<>(emailRequests.size());
+        List<Integer> positions = new ArrayList<>(emailRequests.size());
+        JSONArray messages = new JSONArray();
+        for (int i = 0; i < emailRequests.size(); i++) {
+            EmailRequestDTO emailRequest = emailRequests.get(i);
+            try {
+                messages.put(toMessage(emailRequest));
+                sendable.add(emailRequest);
+                positions.add(i);
+            } catch (IllegalArgumentException e) {
+                logger.error("Cannot render email to {}: {}", emailRequest.getTo(), e.getMessage());
+                results[i] = EmailResponseDTO.permanentError("Template error: " + e.getMessage());
+            }
+        }
+        if (!sendable.isEmpty()) {
+            List<EmailResponseDTO> sent = postBatch(sendable, messages);
+            for (int i = 0; i < sent.size(); i++) {
+                results[positions.get(i)] = sent.get(i);
+            }
+        }
+        return Arrays.asList(results);
+    }
+    
+    /**
+     * One Send API v3.1 call for up to {@code maxBatchSize} emails. The response lists one entry per
+     * message in request order, each with its own status, so per-email results and errors are mapped
+     * back by position. Never throws; failures of the whole call are reported for every email.
+     */
+    private List<EmailResponseDTO> postBatch(List<EmailRequestDTO> emailRequests, JSONArray messages) {
         try {
-            logger.info("Attempting to send email to: {}", emailRequest.getTo());
-            
-            // Create Mailjet client
-            MailjetClient client = new MailjetClient(
-                ClientOptions.builder()
-                    .apiKey(apiKey)
-                    .apiSecretKey(apiSecret)
-                    .build()
-            );
+            logger.info("Attempting to send {} email(s) in one Mailjet request", emailRequests.size());
             
             // Build email request
             MailjetRequest request = new MailjetRequest(Emailv31.resource)
-                .property(Emailv31.MESSAGES, new JSONArray()
-                    .put(new JSONObject()
-                        .put(Emailv31.Message.FROM, new JSONObject()
-                            .put("Email", fromEmail)
-                            .put("Name", fromName))
-                        .put(Emailv31.Message.TO, new JSONArray()
-                            .put(new JSONObject()
-                                .put("Email", emailRequest.getTo())))
-                        .put(Emailv31.Message.SUBJECT, emailRequest.getSubject())
-                        .put(Emailv31.Message.TEXTPART, emailRequest.getBody())
-                        .put(Emailv31.Message.HTMLPART, 
-                            "<div style='font-family: Arial, sans-serif; line-height: 1.6;'>" +
-                            emailRequest.getBody().replace("\n", "<br>") +
-                            "</div>")));
+                .property(Emailv31.MESSAGES, messages);
             
             // Send email
             MailjetResponse response = client.post(request);
             
-            if (response.getStatus() == 200) {
-                JSONArray messages = response.getData();
-                if (messages.length() > 0) {
-                    JSONObject message = messages.getJSONObject(0);
-                    String messageId = message.optString("MessageID", "unknown");
-                    
-                    logger.info("Email sent successfully. Message ID: {}", messageId);
-                    return EmailResponseDTO.success(messageId);
-                } else {
-                    logger.error("No message data in response");
-                    return EmailResponseDTO.error("No message data in response");
+            // Per-message results come back for partial failures too (HTTP 400 with mixed statuses)
+            JSONArray results = response.getData();
+            if (results.length() == emailRequests.size()) {
+                List<EmailResponseDTO> responses = new ArrayList<>(results.length());
+                for (int i = 0; i < results.length(); i++) {
+                    responses.add(toResponse(emailRequests.get(i), results.getJSONObject(i), response.getStatus()));
                 }
-            } else {
-                String errorMessage = "Failed to send email. Status: " + response.getStatus() + 
-                                    ", Data: " + response.getData();
-                logger.error(errorMessage);
-                return EmailResponseDTO.error(errorMessage);
+                return responses;
             }
             
+            String errorMessage = response.getStatus() == 200
+                ? "No message data in response"
+                : "Failed to send email. Status: " + response.getStatus() + ", Data: " + results;
+            logger.error(errorMessage);
+            return Collections.nCopies(emailRequests.size(), EmailResponseDTO.error(errorMessage));
+            
         } catch (MailjetException e) {
             String errorMessage = "Mailjet API error: " + e.getMessage();
             logger.error(errorMessage, e);
-            return EmailResponseDTO.error(errorMessage);
+            return Collections.nCopies(emailRequests.size(), EmailResponseDTO.error(errorMessage));
         } catch (Exception e) {
             String errorMessage = "Unexpected error while sending email: " + e.getMessage();
             logger.error(errorMessage, e);
-            return EmailResponseDTO.error(errorMessage);
+            return Collections.nCopies(emailRequests.size(), EmailResponseDTO.error(errorMessage));
+        }
+    }
+    
+    private JSONObject toMessage(EmailRequestDTO emailRequest) {
+        return new JSONObject()
+            .put(Emailv31.Message.FROM, new JSONObject()
+                .put("Email", fromEmail)
+                .put("Name", fromName))
+            .put(Emailv31.Message.TO, new JSONArray()
+                .put(new JSONObject()
+                    .put("Email", emailRequest.getTo())))
+            .put(Emailv31.Message.SUBJECT, emailRequest.getSubject())
+            .put(Emailv31.Message.TEXTPART, emailRequest.getBody())
+            .put(Emailv31.Message.HTMLPART, renderHtml(emailRequest));
+    }
+    
+    /**
+     * HTML part from the request's template, or the built-in default wrapper around the body.
+     * Request variables are available alongside {@code to}, {@code subject}, {@code body} and
+     * {@code bodyHtml} (the body with line breaks as {@code <br>}).
+     */
+    private String renderHtml(EmailRequestDTO emailRequest) {
+        Map<String, Object> variables = new HashMap<>();
+        if (emailRequest.getVariables() != null) {
+            variables.putAll(emailRequest.getVariables());
+        }
+        variables.put("to", emailRequest.getTo());
+        variables.put("subject", emailRequest.getSubject());
+        variables.put("body", emailRequest.getBody());
+        variables.put("bodyHtml", emailRequest.getBody().replace("\n", "<br>"));
+        String templateName = emailRequest.getTemplateName() != null ? emailRequest.getTemplateName() : DEFAULT_TEMPLATE;
+        return templateEngine.render(templateName, variables);
+    }
+    
+    private EmailResponseDTO toResponse(EmailRequestDTO emailRequest, JSONObject result, int httpStatus) {
+        if ("success".equalsIgnoreCase(result.optString("Status"))) {
+            // v3.1 reports the MessageID per recipient
+            JSONArray to = result.optJSONArray("To");
+            String messageId = to != null && to.length() > 0
+                ? to.getJSONObject(0).optString("MessageID", "unknown")
+                : result.optString("MessageID", "unknown");
+            logger.info("Email sent successfully to {}. Message ID: {}", emailRequest.getTo(), messageId);
+            return EmailResponseDTO.success(messageId);
+        }
+        JSONArray errors = result.optJSONArray("Errors");
+        String errorMessage = "Failed to send email. Status: " + httpStatus + ", Errors: " + errors;
+        logger.error("Email to {} rejected: {}", emailRequest.getTo(), errorMessage);
+        int status = errors != null && errors.length() > 0
+            ? errors.getJSONObject(0).optInt("StatusCode", httpStatus)
+            : httpStatus;
+        return isPermanent(status) ? EmailResponseDTO.permanentError(errorMessage) : EmailResponseDTO.error(errorMessage);
+    }
+    
+    /**
+     * A 4xx on a single message is a validation error (bad address, missing field) that fails the
+     * same way every time. Throttling and timeouts are transient, and 401/403 concern the account
+     * rather than the message.
+     */
+    static boolean isPermanent(int status) {
+        return status >= 400 && status < 500
+            && status != 401 && status != 403 && status != 408 && status != 429;
+    }
+    
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (microBatcher != null) {
+            microBatcher.shutdown();
         }
+        executor.shutdown();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
     }
     
     @Override
@@ -0,0 +1,121 @@
+package com.apitest.apitest.mailjet.template;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A template parsed once into a flat render plan of literal and variable segments.
+ * {@code {{name}}} inserts the HTML-escaped value, {@code {{{name}}}} inserts it as-is and
+ * unknown variables render as empty. Rendering only appends to the caller's buffer, so it
+ * allocates nothing per call beyond what the buffer itself needs to grow.
+ */
+public final class CompiledTemplate {
+    
+    private final String name;
+    private final Segment[] segments;
+    // Literal length plus a small allowance per variable, used to presize render buffers
+    private final int sizeHint;
+    
+    private CompiledTemplate(String name, Segment[] segments, int sizeHint) {
+        this.name = name;
+        this.segments = segments;
+        this.sizeHint = sizeHint;
+    }
+    
+    public static CompiledTemplate compile(String name, String source) {
+        List<Segment> segments = new ArrayList<>();
+        int literalChars = 0;
+        int variables = 0;
+        int pos = 0;
+        while (pos < source.length()) {
+            int open = source.indexOf("{{", pos);
+            if (open < 0) {
+                break;
+            }
+            boolean raw = source.startsWith("{{{", open);
+            String close = raw ? "}}}" : "}}";
+            int start = open + (raw ? 3 : 2);
+            int end = source.indexOf(close, start);
+            if (end < 0) {
+                throw new IllegalArgumentException("Unclosed variable in template '" + name + "' at offset " + open);
+            }
+            String variable = source.substring(start, end).trim();
+            if (variable.isEmpty()) {
+                throw new IllegalArgumentException("Empty variable in template '" + name + "' at offset " + open);
+            }
+            if (open > pos) {
+                segments.add(new Literal(source.substring(pos, open)));
+                literalChars += open - pos;
+            }
+            segments.add(new Variable(variable, !raw));
+            variables++;
+            pos = end + close.length();
+        }
+        if (pos < source.length()) {
+            segments.add(new Literal(source.substring(pos)));
+            literalChars += source.length() - pos;
+        }
+        return new CompiledTemplate(name, segments.toArray(Segment[]::new), literalChars + variables * 16);
+    }
+    
+    public String name() {
+        return name;
+    }
+    
+    public int sizeHint() {
+        return sizeHint;
+    }
+    
+    public void render(Map<String, ?> variables, StringBuilder out) {
+        for (Segment segment : segments) {
+            if (segment instanceof Literal literal) {
+                out.append(literal.text());
+            } else {
+                Variable variable = (Variable) segment;
+                Object value = variables.get(variable.name());
+                if (value == null) {
+                    continue;
+                }
+                String text = value.toString();
+                if (variable.escape()) {
+                    appendEscaped(text, out);
+                } else {
+                    out.append(text);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Copies runs of safe characters in bulk and only breaks out for the five HTML-significant ones.
+     */
+    static void appendEscaped(CharSequence text, StringBuilder out) {
+        int runStart = 0;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            String replacement = switch (text.charAt(i)) {
+                case '&' -> "&amp;";
+                case '<' -> "&lt;";
+                case '>' -> "&gt;";
+                case '"' -> "&quot;";
+                case '\'' -> "&#39;";
+                default -> null;
+            };
+            if (replacement != null) {
+                out.append(text, runStart, i).append(replacement);
+                runStart = i + 1;
+            }
+        }
+        out.append(text, runStart, length);
+    }
+    
+    private sealed interface Segment permits Literal, Variable {
+    }
+    
+    private record Literal(String text) implements Segment {
+    }
+    
+    private record Variable(String name, boolean escape) implements Segment {
+    }
+}
@@ -0,0 +1,119 @@
+package com.apitest.apitest.mailjet.template;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Named email templates loaded from {@code mailjet.templates.location} as {@code <name>.html},
+ * compiled once and cached. A cached template is checked against its file's modification time
+ * at most every {@code reload-check-ms} and recompiled when it changed, so edits go live without
+ * a restart. Rendering reuses one buffer per thread.
+ */
+@Component
+public class EmailTemplateEngine {
+    
+    private static final Logger logger = LoggerFactory.getLogger(EmailTemplateEngine.class);
+    
+    private static final Pattern TEMPLATE_NAME = Pattern.compile("[A-Za-z0-9_-]{1,100}");
+    
+    // Buffers that grew past this are dropped instead of being kept alive by the thread
+    private static final int MAX_RETAINED_BUFFER = 256 * 1024;
+    
+    private record Entry(CompiledTemplate template, long lastModified, long checkedAt) {
+    }
+    
+    private final ResourceLoader resourceLoader;
+    private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+    private final ThreadLocal<StringBuilder> buffers = ThreadLocal.withInitial(() -> new StringBuilder(4096));
+    
+    @Value("${mailjet.templates.location:classpath:email-templates/}")
+    private String location;
+    
+    @Value("${mailjet.templates.reload-check-ms:2000}")
+    private long reloadCheckMs;
+    
+    public EmailTemplateEngine(ResourceLoader resourceLoader) {
+        this.resourceLoader = resourceLoader;
+    }
+    
+    public String render(String name, Map<String, ?> variables) {
+        CompiledTemplate template = template(name);
+        StringBuilder buffer = buffers.get();
+        buffer.setLength(0);
+        buffer.ensureCapacity(template.sizeHint());
+        template.render(variables, buffer);
+        String rendered = buffer.toString();
+        if (buffer.capacity() > MAX_RETAINED_BUFFER) {
+            buffers.remove();
+        }
+        return rendered;
+    }
+    
+    /**
+     * The compiled template, loading it on first use and recompiling it if its source changed.
+     *
+     * @throws IllegalArgumentException if the name is invalid or no such template exists
+     */
+    public CompiledTemplate template(String name) {
+        if (name == null || !TEMPLATE_NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("Invalid template name: " + name);
+        }
+        Entry entry = cache.get(name);
+        long now = System.currentTimeMillis();
+        if (entry != null && (reloadCheckMs <= 0 || now - entry.checkedAt() < reloadCheckMs)) {
+            return entry.template();
+        }
+        return cache.compute(name, (key, current) -> load(key, current, now)).template();
+    }
+    
+    private Entry load(String name, Entry current, long now) {
+        // Another thread may have refreshed the entry while this one waited for the lock
+        if (current != null && reloadCheckMs > 0 && now - current.checkedAt() < reloadCheckMs) {
+            return current;
+        }
+        Resource resource = resourceLoader.getResource(location + name + ".html");
+        try {
+            if (!resource.exists()) {
+                throw new IllegalArgumentException("Unknown email template: " + name);
+            }
+            long lastModified = lastModified(resource);
+            if (current != null && lastModified == current.lastModified()) {
+                return new Entry(current.template(), lastModified, now);
+            }
+            try (InputStream in = resource.getInputStream()) {
+                CompiledTemplate template = CompiledTemplate.compile(name, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+                logger.info("{} email template '{}'", current == null ? "Compiled" : "Recompiled", name);
+                return new Entry(template, lastModified, now);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            if (current != null) {
+                // Keep serving the last good version rather than failing sends over a bad edit
+                logger.warn("Reloading email template '{}' failed, keeping previous version: {}", name, e.getMessage());
+                return new Entry(current.template(), current.lastModified(), now);
+            }
+            if (e instanceof IllegalArgumentException iae) {
+                throw iae;
+            }
+            throw new IllegalArgumentException("Cannot read email template " + name + ": " + e.getMessage(), e);
+        }
+    }
+    
+    private static long lastModified(Resource resource) {
+        try {
+            return resource.lastModified();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+}
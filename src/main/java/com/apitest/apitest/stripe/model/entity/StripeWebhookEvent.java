@@ -0,0 +1,51 @@
+package com.apitest.apitest.stripe.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * A verified Stripe webhook delivery. The id is Stripe's event id, so a redelivered event collides
+ * on insert; the raw payload is kept until the event is processed so that events acknowledged but
+ * not yet handled survive a restart.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "stripe_webhook_events")
+@CompoundIndex(name = "status_next_attempt", def = "{'status': 1, 'nextAttemptAt': 1}")
+@CompoundIndex(name = "partition_received", def = "{'partitionKey': 1, 'receivedAt': 1}")
+public class StripeWebhookEvent {
+    @Id
+    private String eventId;
+    private String type;
+    private String payload;
+    /** Lane key of the event (usually the customer id); later events for the key wait for this one. */
+    private String partitionKey;
+
+    @Builder.Default
+    private Status status = Status.RECEIVED;
+    private int attempts;
+    private String lastError;
+    /** When the sweep may resubmit the event: after its backoff, or once it has waited too long in a lane. */
+    private Instant nextAttemptAt;
+    /** Lease held by the worker handling the event; expired leases are reclaimed. */
+    private Instant lockedUntil;
+    private Instant processedAt;
+
+    /** Stripe retries for up to three days; records outlive that so late duplicates are still caught. */
+    @Indexed(expireAfter = "30d")
+    private Instant receivedAt;
+
+    public enum Status {
+        RECEIVED, PROCESSING, PROCESSED, FAILED, DEAD_LETTER
+    }
+}
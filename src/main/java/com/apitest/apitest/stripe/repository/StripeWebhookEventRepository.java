@@ -0,0 +1,9 @@
+package com.apitest.apitest.stripe.repository;
+
+import com.apitest.apitest.stripe.model.entity.StripeWebhookEvent;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface StripeWebhookEventRepository extends ReactiveMongoRepository<StripeWebhookEvent, String> {
+}
@@ -1,6 +1,9 @@
 package com.apitest.apitest.stripe.service.impl;
 
 import com.apitest.apitest.stripe.service.StripeService;
+import com.apitest.apitest.stripe.webhook.StripeEventDeduplicator;
+import com.apitest.apitest.stripe.webhook.StripeEventDispatcher;
+import com.apitest.apitest.stripe.webhook.StripeEventRoute;
 import com.stripe.Stripe;
 import com.stripe.exception.SignatureVerificationException;
 import com.stripe.model.Event;
@@ -24,6 +27,9 @@ public class StripeServiceImpl implements StripeService {
     @Value("${stripe.api.key:}")
     private String apiKey;
 
+    private final StripeEventDeduplicator deduplicator;
+    private final StripeEventDispatcher dispatcher;
+
     @Override
     public ResponseEntity<String> handleWebhook(String payload, String signatureHeader) {
         if (webhookSecret == null || webhookSecret.isBlank()) {
@@ -44,20 +50,15 @@ public class StripeServiceImpl implements StripeService {
             // Verify signature and parse the event
             Event event = Webhook.constructEvent(payload, signatureHeader, webhookSecret);
 
-            // Handle event types you care about
-            String eventType = event.getType();
-            log.info("Received Stripe event: {}", eventType);
+            log.info("Received Stripe event {}: {}", event.getId(), event.getType());
 
-            switch (eventType) {
-                case "customer.subscription.created" -> {
-                    log.info("customer.subscription.created: {}", event.getDataObjectDeserializer().getObject().orElse(null));
-                    // TODO: add your business logic
-                }
-                case "charge.refunded" -> {
-                    log.info("Charge refunded: {}", event.getDataObjectDeserializer().getObject().orElse(null));
-                }
-                default -> log.debug("Unhandled event type: {}", eventType);
+            // Acknowledge now and handle on the worker pool, so slow handlers never make Stripe time out and retry
+            StripeEventRoute route = dispatcher.route(event);
+            if (deduplicator.register(event, payload, route.partitionKey()) == StripeEventDeduplicator.Outcome.DUPLICATE) {
+                log.debug("Duplicate Stripe event {} acknowledged", event.getId());
+                return ResponseEntity.ok("duplicate");
             }
+            dispatcher.submit(route);
 
             return ResponseEntity.ok("success");
         } catch (SignatureVerificationException e) {
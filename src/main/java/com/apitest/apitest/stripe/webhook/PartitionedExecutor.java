@@ -0,0 +1,102 @@
+package com.apitest.apitest.stripe.webhook;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs tasks on a fixed number of single-threaded lanes picked by hashing a key. Tasks with the same
+ * key always land on the same lane and run one at a time in submission order; tasks with different
+ * keys spread over the lanes and run in parallel. Each lane has its own bounded queue, so one hot key
+ * fills only its lane.
+ */
+public class PartitionedExecutor {
+
+    private final ThreadPoolExecutor[] lanes;
+    private final Timer waitTimer;
+
+    /**
+     * @param name prefix for thread names and meters ({@code <name>.lane.depth}, {@code <name>.lane.wait})
+     */
+    public PartitionedExecutor(String name, int laneCount, int laneCapacity, MeterRegistry meterRegistry) {
+        this.lanes = new ThreadPoolExecutor[Math.max(1, laneCount)];
+        for (int i = 0; i < lanes.length; i++) {
+            String threadName = name + "-lane-" + i;
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(Math.max(1, laneCapacity)),
+                    task -> {
+                        Thread thread = new Thread(task, threadName);
+                        thread.setDaemon(true);
+                        return thread;
+                    },
+                    new ThreadPoolExecutor.AbortPolicy());
+            Gauge.builder(name + ".lane.depth", lanes[i], lane -> lane.getQueue().size())
+                    .description("Tasks waiting on this lane")
+                    .tag("lane", String.valueOf(i))
+                    .register(meterRegistry);
+        }
+        this.waitTimer = Timer.builder(name + ".lane.wait")
+                .description("Time a task waited on its lane before starting")
+                .register(meterRegistry);
+    }
+
+    public int laneCount() {
+        return lanes.length;
+    }
+
+    public int laneOf(String key) {
+        int hash = key == null ? 0 : key.hashCode();
+        // Spread the high bits so keys sharing a long prefix (cus_...) still differ in the low ones
+        return Math.floorMod(hash ^ (hash >>> 16), lanes.length);
+    }
+
+    /**
+     * @throws RejectedExecutionException if the key's lane queue is full or the executor is shut down
+     */
+    public void execute(String key, Runnable task) {
+        long enqueuedAt = System.nanoTime();
+        lanes[laneOf(key)].execute(() -> {
+            waitTimer.record(System.nanoTime() - enqueuedAt, TimeUnit.NANOSECONDS);
+            task.run();
+        });
+    }
+
+    /** Queued tasks across all lanes. */
+    public int queued() {
+        int queued = 0;
+        for (ThreadPoolExecutor lane : lanes) {
+            queued += lane.getQueue().size();
+        }
+        return queued;
+    }
+
+    /** Room left in the emptiest lane, i.e. how many tasks are certain to be accepted by some lane. */
+    public int maxRemainingCapacity() {
+        int remaining = 0;
+        for (ThreadPoolExecutor lane : lanes) {
+            remaining = Math.max(remaining, lane.getQueue().remainingCapacity());
+        }
+        return remaining;
+    }
+
+    public void shutdown() {
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (ThreadPoolExecutor lane : lanes) {
+            if (!lane.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,104 @@
+package com.apitest.apitest.stripe.webhook;
+
+import com.apitest.apitest.stripe.model.entity.StripeWebhookEvent;
+import com.apitest.apitest.stripe.repository.StripeWebhookEventRepository;
+import com.stripe.model.Event;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Decides whether a verified event is a first delivery. Recently seen ids are answered from a
+ * bounded in-memory set without a round trip; everything else is settled by inserting the event
+ * under its id, where Mongo's unique {@code _id} index catches redeliveries to other instances or
+ * from before a restart.
+ */
+@Slf4j
+@Component
+public class StripeEventDeduplicator {
+
+    public enum Outcome {
+        NEW, DUPLICATE
+    }
+
+    private final StripeWebhookEventRepository repository;
+    private final Counter duplicateCounter;
+    private Map<String, Boolean> recentIds;
+
+    @Value("${stripe.webhook.dedupe.memory-size:10000}")
+    private int memorySize;
+
+    @Value("${stripe.webhook.dedupe.insert-timeout-ms:5000}")
+    private long insertTimeoutMs;
+
+    // The event is queued right after it is stored; the sweep only takes it if it is still waiting after this
+    @Value("${stripe.webhook.recovery-delay-ms:600000}")
+    private long recoveryDelayMs;
+
+    public StripeEventDeduplicator(StripeWebhookEventRepository repository, MeterRegistry meterRegistry) {
+        this.repository = repository;
+        this.duplicateCounter = Counter.builder("stripe.webhook.duplicates")
+                .description("Stripe deliveries acknowledged without processing because the event was already seen")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void init() {
+        int maxIds = Math.max(1, memorySize);
+        recentIds = new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > maxIds;
+            }
+        };
+    }
+
+    /**
+     * Record the event, returning {@link Outcome#DUPLICATE} if it was seen before.
+     *
+     * @throws RuntimeException if the event could not be stored; the caller should fail the delivery
+     *                          so that Stripe retries it
+     */
+    public Outcome register(Event event, String payload, String partitionKey) {
+        String eventId = event.getId();
+        synchronized (recentIds) {
+            if (recentIds.putIfAbsent(eventId, Boolean.TRUE) != null) {
+                duplicateCounter.increment();
+                return Outcome.DUPLICATE;
+            }
+        }
+
+        Instant now = Instant.now();
+        StripeWebhookEvent record = StripeWebhookEvent.builder()
+                .eventId(eventId)
+                .type(event.getType())
+                .payload(payload)
+                .partitionKey(partitionKey)
+                .receivedAt(now)
+                .nextAttemptAt(now.plusMillis(recoveryDelayMs))
+                .build();
+        try {
+            repository.insert(record).block(Duration.ofMillis(insertTimeoutMs));
+            return Outcome.NEW;
+        } catch (DuplicateKeyException e) {
+            log.debug("Stripe event {} was already recorded", eventId);
+            duplicateCounter.increment();
+            return Outcome.DUPLICATE;
+        } catch (RuntimeException e) {
+            // Not stored, so a retried delivery must not be mistaken for a duplicate
+            synchronized (recentIds) {
+                recentIds.remove(eventId);
+            }
+            throw e;
+        }
+    }
+}
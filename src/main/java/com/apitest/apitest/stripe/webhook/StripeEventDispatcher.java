@@ -0,0 +1,326 @@
+package com.apitest.apitest.stripe.webhook;
+
+import com.apitest.apitest.stripe.model.entity.StripeWebhookEvent;
+import com.mongodb.client.result.UpdateResult;
+import com.stripe.model.Event;
+import com.stripe.net.ApiResource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs Stripe event handlers off the webhook request thread, on lanes partitioned by customer (or
+ * object) id: events for one customer are applied one at a time in the order they were received,
+ * while different customers proceed in parallel. Each event is leased in Mongo before it is handled,
+ * so an event is handled once at a time even when the recovery sweep and the webhook submit it
+ * concurrently. Lane order alone is not enough once an event fails or is lost, so before handling an
+ * event the worker checks that no earlier event for the same key is still pending; if one is, the
+ * event is held and retried after {@code hold-delay-ms}. Failed events are retried with backoff, and
+ * events that never reached a lane or were lost from one (full lane, restart) are picked up by the
+ * sweep. An event that is dead-lettered no longer holds back the ones after it.
+ */
+@Slf4j
+@Component
+public class StripeEventDispatcher {
+
+    private static final Duration MONGO_TIMEOUT = Duration.ofSeconds(10);
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final StripeEventHandlerRegistry handlerRegistry;
+    private final MeterRegistry meterRegistry;
+    private final PartitionedExecutor executor;
+    private final Counter processedCounter;
+    private final Counter failedCounter;
+    private final Counter rejectedCounter;
+    private final Counter heldCounter;
+
+    @Value("${stripe.webhook.lease-ms:300000}")
+    private long leaseMs;
+
+    @Value("${stripe.webhook.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${stripe.webhook.backoff-initial-ms:5000}")
+    private long backoffInitialMs;
+
+    @Value("${stripe.webhook.backoff-max-ms:3600000}")
+    private long backoffMaxMs;
+
+    @Value("${stripe.webhook.recovery-batch-size:100}")
+    private int recoveryBatchSize;
+
+    /** How long an event waits before another try when an earlier event for its key is still pending. */
+    @Value("${stripe.webhook.hold-delay-ms:10000}")
+    private long holdDelayMs;
+
+    /** How long an event may wait in a lane before the sweep assumes it was lost and queues it again. */
+    @Value("${stripe.webhook.recovery-delay-ms:600000}")
+    private long recoveryDelayMs;
+
+    public StripeEventDispatcher(ReactiveMongoTemplate mongoTemplate,
+                                 StripeEventHandlerRegistry handlerRegistry,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${stripe.webhook.lanes:8}") int lanes,
+                                 @Value("${stripe.webhook.lane-capacity:250}") int laneCapacity) {
+        this.mongoTemplate = mongoTemplate;
+        this.handlerRegistry = handlerRegistry;
+        this.meterRegistry = meterRegistry;
+        this.executor = new PartitionedExecutor("stripe.webhook", lanes, laneCapacity, meterRegistry);
+        this.processedCounter = Counter.builder("stripe.webhook.processed")
+                .description("Stripe events handled successfully")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("stripe.webhook.failed")
+                .description("Stripe event handler runs that threw and were rescheduled or dead-lettered")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("stripe.webhook.rejected")
+                .description("Stripe events left for the recovery sweep because their lane was full")
+                .register(meterRegistry);
+        this.heldCounter = Counter.builder("stripe.webhook.held")
+                .description("Stripe events put back because an earlier event for the same key was still pending")
+                .register(meterRegistry);
+        Gauge.builder("stripe.webhook.queue.depth", executor, PartitionedExecutor::queued)
+                .description("Stripe events waiting on any lane")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queue the event on the lane of its partition key (usually the customer), behind any earlier
+     * events for that key. Never blocks: if the lane is full the event is made due at once, so the
+     * next recovery sweep submits it again.
+     */
+    public void submit(StripeEventRoute route) {
+        if (!enqueue(route)) {
+            Query query = new Query(Criteria.where("_id").is(route.eventId())
+                    .and("status").in(StripeWebhookEvent.Status.RECEIVED, StripeWebhookEvent.Status.FAILED));
+            mongoTemplate.updateFirst(query, new Update().set("nextAttemptAt", Instant.now()), StripeWebhookEvent.class)
+                    .subscribe(result -> { }, e -> log.warn("Could not mark Stripe event {} for recovery: {}",
+                            route.eventId(), e.getMessage()));
+        }
+    }
+
+    /** Bind the event to its handler and lane key. */
+    public StripeEventRoute route(Event event) {
+        return handlerRegistry.route(event);
+    }
+
+    private boolean enqueue(StripeEventRoute route) {
+        try {
+            executor.execute(route.partitionKey(), () -> process(route));
+            return true;
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            log.warn("Stripe lane {} full; event {} left for the recovery sweep",
+                    executor.laneOf(route.partitionKey()), route.eventId());
+            return false;
+        }
+    }
+
+    private void process(StripeEventRoute route) {
+        StripeWebhookEvent record;
+        try {
+            record = claim(route.eventId());
+        } catch (RuntimeException e) {
+            log.error("Could not lease Stripe event {}; leaving it for the recovery sweep: {}", route.eventId(),
+                    e.getMessage());
+            return;
+        }
+        if (record == null) {
+            // Already handled, or another worker holds the lease
+            return;
+        }
+        try {
+            if (hasEarlierPending(record)) {
+                hold(record);
+                return;
+            }
+        } catch (RuntimeException e) {
+            log.error("Could not check the order of Stripe event {}; leaving it for the recovery sweep: {}",
+                    route.eventId(), e.getMessage());
+            return;
+        }
+        log.info("Handling Stripe event {}: {}", route.eventId(), route.eventType());
+        long startedAt = System.nanoTime();
+        try {
+            route.invocation().run();
+            markProcessed(record);
+        } catch (Exception e) {
+            markFailed(record, e);
+        } finally {
+            Timer.builder("stripe.webhook.handler")
+                    .description("Time spent in Stripe event handlers")
+                    .tag("type", route.eventType())
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private StripeWebhookEvent claim(String eventId) {
+        Instant now = Instant.now();
+        Query query = new Query(Criteria.where("_id").is(eventId).orOperator(
+                Criteria.where("status").in(StripeWebhookEvent.Status.RECEIVED, StripeWebhookEvent.Status.FAILED),
+                Criteria.where("status").is(StripeWebhookEvent.Status.PROCESSING).and("lockedUntil").lt(now)));
+        Update update = new Update()
+                .set("status", StripeWebhookEvent.Status.PROCESSING)
+                .set("lockedUntil", now.plusMillis(leaseMs))
+                .inc("attempts", 1);
+        return mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true),
+                StripeWebhookEvent.class).block(MONGO_TIMEOUT);
+    }
+
+    /**
+     * Whether an event for the same key that was received earlier is still waiting, failed and awaiting
+     * a retry, or being handled (possibly by another instance).
+     */
+    private boolean hasEarlierPending(StripeWebhookEvent record) {
+        if (record.getPartitionKey() == null || record.getReceivedAt() == null) {
+            return false;
+        }
+        Query query = new Query(Criteria.where("partitionKey").is(record.getPartitionKey())
+                .and("receivedAt").lt(record.getReceivedAt())
+                .and("status").in(StripeWebhookEvent.Status.RECEIVED, StripeWebhookEvent.Status.PROCESSING,
+                        StripeWebhookEvent.Status.FAILED));
+        return Boolean.TRUE.equals(mongoTemplate.exists(query, StripeWebhookEvent.class).block(MONGO_TIMEOUT));
+    }
+
+    /**
+     * Give the lease back without counting an attempt, so the sweep offers the event again once the
+     * hold delay has passed.
+     */
+    private void hold(StripeWebhookEvent record) {
+        heldCounter.increment();
+        log.info("Holding Stripe event {} ({}) behind an earlier pending event for {}", record.getEventId(),
+                record.getType(), record.getPartitionKey());
+        Update update = new Update()
+                .set("status", record.getAttempts() > 1 ? StripeWebhookEvent.Status.FAILED : StripeWebhookEvent.Status.RECEIVED)
+                .set("nextAttemptAt", Instant.now().plusMillis(holdDelayMs))
+                .unset("lockedUntil")
+                .inc("attempts", -1);
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(record.getEventId())), update,
+                StripeWebhookEvent.class).block(MONGO_TIMEOUT);
+    }
+
+    private void markProcessed(StripeWebhookEvent record) {
+        processedCounter.increment();
+        // The payload is only needed for recovery; the document stays to dedupe redeliveries
+        Update update = new Update()
+                .set("status", StripeWebhookEvent.Status.PROCESSED)
+                .set("processedAt", Instant.now())
+                .unset("lockedUntil")
+                .unset("lastError")
+                .unset("payload");
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(record.getEventId())), update,
+                StripeWebhookEvent.class).block(MONGO_TIMEOUT);
+    }
+
+    private void markFailed(StripeWebhookEvent record, Exception error) {
+        failedCounter.increment();
+        boolean exhausted = record.getAttempts() >= maxAttempts;
+        Update update = new Update()
+                .set("lastError", String.valueOf(error.getMessage()))
+                .unset("lockedUntil");
+        if (exhausted) {
+            update.set("status", StripeWebhookEvent.Status.DEAD_LETTER);
+            log.error("Stripe event {} ({}) dead-lettered after {} attempts", record.getEventId(), record.getType(),
+                    record.getAttempts(), error);
+        } else {
+            Duration delay = backoff(record.getAttempts());
+            update.set("status", StripeWebhookEvent.Status.FAILED)
+                    .set("nextAttemptAt", Instant.now().plus(delay));
+            log.warn("Stripe event {} ({}) failed (attempt {}), retrying in {} ms: {}", record.getEventId(),
+                    record.getType(), record.getAttempts(), delay.toMillis(), error.getMessage());
+        }
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(record.getEventId())), update,
+                StripeWebhookEvent.class).block(MONGO_TIMEOUT);
+    }
+
+    private Duration backoff(int attempts) {
+        long delay = backoffInitialMs << Math.min(Math.max(0, attempts - 1), 20);
+        return Duration.ofMillis(Math.min(delay, backoffMaxMs));
+    }
+
+    /**
+     * Resubmit events that are due: failed ones whose backoff elapsed, ones left waiting in a lane for
+     * longer than the recovery delay (lost to a restart or a full lane), and ones whose worker lease
+     * expired. Events still queued are not due, because queuing an event pushes its next attempt out
+     * by the recovery delay. Only as many as the lanes have room for are loaded, so a backlog drains
+     * at the workers' pace.
+     */
+    @Scheduled(fixedDelayString = "${stripe.webhook.recovery-interval-ms:30000}")
+    public void recover() {
+        int room = Math.min(recoveryBatchSize, executor.maxRemainingCapacity());
+        if (room <= 0) {
+            return;
+        }
+        Query query = new Query(dueCriteria(Instant.now()))
+                .with(Sort.by(Sort.Direction.ASC, "receivedAt"))
+                .limit(room);
+        try {
+            List<StripeWebhookEvent> due = mongoTemplate.find(query, StripeWebhookEvent.class)
+                    .collectList()
+                    .block(MONGO_TIMEOUT);
+            if (due == null || due.isEmpty()) {
+                return;
+            }
+            int resubmitted = 0;
+            for (StripeWebhookEvent record : due) {
+                if (record.getPayload() != null && requeue(record)) {
+                    enqueue(route(ApiResource.GSON.fromJson(record.getPayload(), Event.class)));
+                    resubmitted++;
+                }
+            }
+            log.info("Resubmitted {} of {} due Stripe event(s)", resubmitted, due.size());
+        } catch (RuntimeException e) {
+            log.error("Stripe event recovery failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private static Criteria dueCriteria(Instant now) {
+        return new Criteria().orOperator(
+                Criteria.where("status").in(StripeWebhookEvent.Status.RECEIVED, StripeWebhookEvent.Status.FAILED)
+                        .and("nextAttemptAt").lte(now),
+                Criteria.where("status").is(StripeWebhookEvent.Status.PROCESSING).and("lockedUntil").lt(now));
+    }
+
+    /**
+     * Mark a due event as queued by pushing its next attempt out by the recovery delay. An event whose
+     * worker lease expired goes back to FAILED so a lane worker can claim it again. The update only
+     * matches while the event is still due, so when several instances sweep at once only one of them
+     * resubmits it.
+     */
+    private boolean requeue(StripeWebhookEvent record) {
+        Instant now = Instant.now();
+        Update update = new Update().set("nextAttemptAt", now.plusMillis(recoveryDelayMs));
+        if (record.getStatus() == StripeWebhookEvent.Status.PROCESSING) {
+            update.set("status", StripeWebhookEvent.Status.FAILED)
+                    .set("lastError", "Worker lease expired")
+                    .unset("lockedUntil");
+        }
+        Query query = new Query(new Criteria().andOperator(Criteria.where("_id").is(record.getEventId()), dueCriteria(now)));
+        UpdateResult result = mongoTemplate.updateFirst(query, update, StripeWebhookEvent.class).block(MONGO_TIMEOUT);
+        return result != null && result.getModifiedCount() > 0;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,74 @@
+package com.apitest.apitest.stripe.webhook;
+
+import com.apitest.apitest.stripe.webhook.handler.StripeEventHandler;
+import com.stripe.model.Event;
+import com.stripe.model.HasId;
+import com.stripe.model.StripeObject;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Maps event types to their {@link StripeEventHandler} beans and binds incoming events to them.
+ * Adding an event type means adding a handler bean; nothing here changes.
+ */
+@Slf4j
+@Component
+public class StripeEventHandlerRegistry {
+
+    private final Map<String, StripeEventHandler<?>> handlers = new HashMap<>();
+
+    public StripeEventHandlerRegistry(List<StripeEventHandler<?>> handlers) {
+        for (StripeEventHandler<?> handler : handlers) {
+            StripeEventHandler<?> previous = this.handlers.putIfAbsent(handler.eventType(), handler);
+            if (previous != null) {
+                throw new IllegalStateException("Stripe event type " + handler.eventType() + " is handled by both "
+                        + previous.getClass().getSimpleName() + " and " + handler.getClass().getSimpleName());
+            }
+        }
+        log.info("Stripe event handlers registered for: {}", this.handlers.keySet());
+    }
+
+    /**
+     * Bind the event to its handler. Never throws: an event whose data object cannot be decoded is
+     * routed by its own id to an invocation that rethrows the error, so it fails and is retried like
+     * any other handler failure.
+     */
+    public StripeEventRoute route(Event event) {
+        StripeEventHandler<?> handler = handlers.get(event.getType());
+        if (handler == null) {
+            return new StripeEventRoute(event.getId(), event.getType(), event.getId(),
+                    () -> log.debug("Unhandled event type: {}", event.getType()));
+        }
+        try {
+            return bind(handler, event, dataObject(event));
+        } catch (Exception e) {
+            return new StripeEventRoute(event.getId(), event.getType(), event.getId(), () -> {
+                throw e;
+            });
+        }
+    }
+
+    private static <T extends StripeObject> StripeEventRoute bind(StripeEventHandler<T> handler, Event event,
+                                                                 StripeObject object) {
+        T typed = handler.objectType().cast(object);
+        String key = handler.partitionKey(typed);
+        if (key == null || key.isBlank()) {
+            key = object instanceof HasId hasId && hasId.getId() != null ? hasId.getId() : event.getId();
+        }
+        return new StripeEventRoute(event.getId(), event.getType(), key, () -> handler.handle(event, typed));
+    }
+
+    /**
+     * The typed data object. Events from an API version other than the library's cannot be
+     * deserialized safely; those are decoded best-effort instead of being dropped.
+     */
+    private static StripeObject dataObject(Event event) throws Exception {
+        Optional<StripeObject> object = event.getDataObjectDeserializer().getObject();
+        return object.isPresent() ? object.get() : event.getDataObjectDeserializer().deserializeUnsafe();
+    }
+}
@@ -0,0 +1,12 @@
+package com.apitest.apitest.stripe.webhook;
+
+/**
+ * An event bound to its handler: the lane key it must be ordered by and the call that applies it.
+ */
+public record StripeEventRoute(String eventId, String eventType, String partitionKey, Invocation invocation) {
+
+    @FunctionalInterface
+    public interface Invocation {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,31 @@
+package com.apitest.apitest.stripe.webhook.handler;
+
+import com.stripe.model.Charge;
+import com.stripe.model.Event;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+@Slf4j
+@Component
+public class ChargeRefundedHandler implements StripeEventHandler<Charge> {
+
+    @Override
+    public String eventType() {
+        return "charge.refunded";
+    }
+
+    @Override
+    public Class<Charge> objectType() {
+        return Charge.class;
+    }
+
+    @Override
+    public String partitionKey(Charge charge) {
+        return charge.getCustomer();
+    }
+
+    @Override
+    public void handle(Event event, Charge charge) {
+        log.info("Charge refunded: {} ({} refunded)", charge.getId(), charge.getAmountRefunded());
+    }
+}
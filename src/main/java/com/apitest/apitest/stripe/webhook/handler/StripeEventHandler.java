@@ -0,0 +1,30 @@
+package com.apitest.apitest.stripe.webhook.handler;
+
+import com.stripe.model.Event;
+import com.stripe.model.StripeObject;
+
+/**
+ * Business logic for one Stripe event type. Implementations are Spring beans and are picked up by
+ * {@link com.apitest.apitest.stripe.webhook.StripeEventHandlerRegistry}. Events with the same
+ * {@link #partitionKey} are handled one at a time, in the order they were received: while an earlier
+ * event for the key is waiting, being retried after a failure or being handled elsewhere, later ones
+ * are held. Once an event is dead-lettered the events after it proceed without it, so a handler may
+ * still see an update whose creation event it never applied.
+ *
+ * @param <T> type of the event's {@code data.object}
+ */
+public interface StripeEventHandler<T extends StripeObject> {
+
+    /** The event type handled, e.g. {@code charge.refunded}. */
+    String eventType();
+
+    Class<T> objectType();
+
+    /**
+     * Key whose events must be applied in order, usually the customer id. Null falls back to the
+     * object's own id.
+     */
+    String partitionKey(T object);
+
+    void handle(Event event, T object) throws Exception;
+}
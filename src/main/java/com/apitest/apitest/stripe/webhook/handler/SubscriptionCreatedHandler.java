@@ -0,0 +1,32 @@
+package com.apitest.apitest.stripe.webhook.handler;
+
+import com.stripe.model.Event;
+import com.stripe.model.Subscription;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+@Slf4j
+@Component
+public class SubscriptionCreatedHandler implements StripeEventHandler<Subscription> {
+
+    @Override
+    public String eventType() {
+        return "customer.subscription.created";
+    }
+
+    @Override
+    public Class<Subscription> objectType() {
+        return Subscription.class;
+    }
+
+    @Override
+    public String partitionKey(Subscription subscription) {
+        return subscription.getCustomer();
+    }
+
+    @Override
+    public void handle(Event event, Subscription subscription) {
+        log.info("customer.subscription.created: {} for customer {}", subscription.getId(), subscription.getCustomer());
+        // TODO: add your business logic
+    }
+}
@@ -1,28 +1,200 @@
 package com.apitest.apitest.twilio.controller;
 
+import com.apitest.apitest.twilio.encoding.SmsSegmentPlan;
+import com.apitest.apitest.twilio.encoding.SmsSegmentPlanner;
+import com.apitest.apitest.twilio.model.dto.SmsBulkSendRequest;
+import com.apitest.apitest.twilio.model.dto.SmsBulkSendResponse;
+import com.apitest.apitest.twilio.model.dto.SmsSegmentsRequest;
+import com.apitest.apitest.twilio.model.dto.SmsSegmentsResponse;
 import com.apitest.apitest.twilio.model.dto.SmsSendRequest;
 import com.apitest.apitest.twilio.model.dto.SmsSendResponse;
 import com.apitest.apitest.twilio.model.dto.SmsTestRequest;
+import com.apitest.apitest.twilio.model.entity.SmsDeliveryStatus;
+import com.apitest.apitest.twilio.repository.SmsDeliveryStatusRepository;
+import com.apitest.apitest.twilio.security.TwilioRequestSignatureVerifier;
+import com.apitest.apitest.twilio.sender.TwilioSenderPool;
 import com.apitest.apitest.twilio.service.TwilioSMSService;
+import com.apitest.apitest.twilio.status.SmsStatusBuffer;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+@Slf4j
 @RestController
 @RequestMapping("/api/twilio")
 @RequiredArgsConstructor
 public class TwilioSMSController {
 
     private final TwilioSMSService twilioSMSService;
+    private final TwilioRequestSignatureVerifier signatureVerifier;
+    private final SmsStatusBuffer statusBuffer;
+    private final SmsDeliveryStatusRepository deliveryStatusRepository;
+    private final SmsSegmentPlanner segmentPlanner;
+    private final TwilioSenderPool senderPool;
+
+    @Value("${twilio.status-callback.url:}")
+    private String statusCallbackUrl;
+
+    @Value("${twilio.sms.max-bulk-size:10000}")
+    private int maxBulkSize;
+
+    /** Longest a bulk request may take at the senders' pacing, backlog included; 0 disables the check. */
+    @Value("${twilio.sms.max-bulk-wait-ms:60000}")
+    private long maxBulkWaitMs;
 
     @PostMapping("/sms/send")
-    public ResponseEntity<SmsSendResponse> sendSms(@Valid @RequestBody SmsSendRequest request) {
-        SmsSendResponse response = twilioSMSService.sendSms(request);
-        return ResponseEntity.ok(response);
+    public CompletableFuture<ResponseEntity<SmsSendResponse>> sendSms(@Valid @RequestBody SmsSendRequest request) {
+        return twilioSMSService.sendSmsAsync(request).thenApply(ResponseEntity::ok);
+    }
+
+    @PostMapping("/sms/send/bulk")
+    public CompletableFuture<ResponseEntity<SmsBulkSendResponse>> sendBulkSms(@Valid @RequestBody SmsBulkSendRequest request) {
+        int total = request.getMessages().size();
+        if (total > maxBulkSize) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest()
+                    .body(rejectedBulk(total, "At most " + maxBulkSize + " messages per bulk request")));
+        }
+
+        // The response waits for the last send, so refuse a bulk the senders' pacing would stretch past the limit
+        if (maxBulkWaitMs > 0 && !senderPool.isEmpty()) {
+            long segments = 0;
+            for (SmsSendRequest message : request.getMessages()) {
+                segments += segmentPlanner.preview(message.getMessage(), message.getTransliterate(), message.getSplit())
+                        .totalSegments();
+            }
+            Duration backlog = senderPool.estimatedDrainTime(0);
+            Duration estimate = senderPool.estimatedDrainTime(segments);
+            Duration limit = Duration.ofMillis(maxBulkWaitMs);
+            if (estimate.minus(backlog).compareTo(limit) > 0) {
+                return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(rejectedBulk(total,
+                        "Sending " + segments + " segments takes about " + estimate.minus(backlog).toSeconds()
+                                + " s at the senders' rate; at most " + limit.toSeconds() + " s per bulk request")));
+            }
+            if (estimate.compareTo(limit) > 0) {
+                long retryAfter = Math.max(1, estimate.minus(limit).toSeconds());
+                return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter))
+                        .body(rejectedBulk(total, "Senders are busy; this bulk would finish in about "
+                                + estimate.toSeconds() + " s, over the " + limit.toSeconds() + " s limit")));
+            }
+        }
+
+        long startedAt = System.nanoTime();
+        return twilioSMSService.sendBulkAsync(request.getMessages())
+                .thenApply(results -> {
+                    int failed = (int) results.stream().filter(r -> "FAILED".equals(r.getStatus())).count();
+                    long segments = results.stream()
+                            .filter(r -> r.getSegments() != null && !"FAILED".equals(r.getStatus()))
+                            .mapToLong(SmsSendResponse::getSegments)
+                            .sum();
+                    return ResponseEntity.ok(SmsBulkSendResponse.builder()
+                            .total(results.size())
+                            .sent(results.size() - failed)
+                            .failed(failed)
+                            .durationMs((System.nanoTime() - startedAt) / 1_000_000)
+                            .totalSegments(segments)
+                            .results(results)
+                            .build());
+                });
+    }
+
+    private static SmsBulkSendResponse rejectedBulk(int total, String errorMessage) {
+        return SmsBulkSendResponse.builder()
+                .total(total)
+                .failed(total)
+                .results(List.of(SmsSendResponse.builder()
+                        .status("FAILED")
+                        .errorMessage(errorMessage)
+                        .build()))
+                .build();
+    }
+
+    /**
+     * Report the encoding and segment count a body would be sent with, without sending it.
+     */
+    @PostMapping("/sms/segments")
+    public ResponseEntity<SmsSegmentsResponse> planSegments(@Valid @RequestBody SmsSegmentsRequest request) {
+        SmsSegmentPlan plan = segmentPlanner.preview(request.getMessage(), request.getTransliterate(), request.getSplit());
+        return ResponseEntity.ok(SmsSegmentsResponse.builder()
+                .encoding(plan.info().encoding().name())
+                .units(plan.info().units())
+                .segments(plan.totalSegments())
+                .nonGsmCharacters(plan.info().nonGsmCharacters())
+                .transliterated(plan.transliterated())
+                .parts(plan.parts())
+                .withinLimit(!segmentPlanner.exceedsLimit(plan))
+                .build());
+    }
+
+    /**
+     * Twilio StatusCallback receiver. Updates are buffered and written in bulk, so this only verifies
+     * the signature and returns; a full buffer answers 503 so Twilio retries.
+     */
+    @PostMapping(value = "/sms/status", consumes = MediaType.APPLICATION_FORM_URLENCODED_VALUE)
+    public ResponseEntity<Void> receiveStatusCallback(
+            @RequestHeader(name = "X-Twilio-Signature", required = false) String signature,
+            @RequestParam Map<String, String> params,
+            HttpServletRequest httpRequest) {
+
+        if (!signatureVerifier.isConfigured()) {
+            log.warn("Twilio auth token is not configured; rejecting status callback");
+            return ResponseEntity.status(HttpStatus.PRECONDITION_REQUIRED).build();
+        }
+        // Behind a proxy the URL Twilio signed differs from the one we see, so prefer the configured public URL
+        String url = statusCallbackUrl != null && !statusCallbackUrl.isBlank()
+                ? statusCallbackUrl
+                : httpRequest.getRequestURL().toString();
+        if (!signatureVerifier.isValid(url, params, signature)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        String sid = params.get("MessageSid");
+        String status = params.get("MessageStatus");
+        if (sid == null || sid.isBlank() || status == null || status.isBlank()) {
+            return ResponseEntity.badRequest().build();
+        }
+        boolean buffered = statusBuffer.add(SmsDeliveryStatus.builder()
+                .sid(sid)
+                .status(status)
+                .to(params.get("To"))
+                .from(params.get("From"))
+                .messagingServiceSid(params.get("MessagingServiceSid"))
+                .errorCode(params.get("ErrorCode"))
+                .updatedAt(Instant.now())
+                .build());
+        if (!buffered) {
+            // Twilio retries callbacks answered with a 5xx, so the update arrives again once the buffer drains
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    @GetMapping("/sms/status/{sid}")
+    public Mono<ResponseEntity<SmsDeliveryStatus>> getDeliveryStatus(@PathVariable String sid) {
+        return deliveryStatusRepository.findById(sid)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
     }
 
     @PostMapping("/sms/test")
@@ -0,0 +1,28 @@
+package com.apitest.apitest.twilio.encoding;
+
+/**
+ * Character set a message is sent in. GSM-7 packs 160 characters into a segment (153 when
+ * concatenated); a single character outside it switches the whole message to UCS-2 at 70 (67).
+ */
+public enum SmsEncoding {
+    GSM_7(160, 153),
+    UCS_2(70, 67);
+
+    private final int singleSegmentUnits;
+    private final int multiSegmentUnits;
+
+    SmsEncoding(int singleSegmentUnits, int multiSegmentUnits) {
+        this.singleSegmentUnits = singleSegmentUnits;
+        this.multiSegmentUnits = multiSegmentUnits;
+    }
+
+    /** Septets (GSM-7) or UTF-16 code units (UCS-2) that fit in a message of one segment. */
+    public int singleSegmentUnits() {
+        return singleSegmentUnits;
+    }
+
+    /** Units per segment once the message is concatenated and each part carries a header. */
+    public int multiSegmentUnits() {
+        return multiSegmentUnits;
+    }
+}
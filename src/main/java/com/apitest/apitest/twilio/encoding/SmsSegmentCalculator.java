@@ -0,0 +1,229 @@
+package com.apitest.apitest.twilio.encoding;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * GSM 03.38 analysis of outgoing SMS bodies. {@link #analyze} is a single pass over the characters
+ * with a table lookup each and allocates nothing but the result; {@link #transliterate} and
+ * {@link #split} only build new strings when they change something.
+ */
+public final class SmsSegmentCalculator {
+
+    private static final byte NOT_GSM = 0;
+    private static final byte BASIC = 1;
+    // Extension table characters are sent as ESC + char and take two septets
+    private static final byte EXTENDED = 2;
+
+    private static final String GSM_BASIC_LATIN =
+            "@£$¥èéùìòÇ\nØø\rÅå_ÆæßÉ !\"#¤%&'()*+,-./0123456789:;<=>?"
+                    + "¡ABCDEFGHIJKLMNOPQRSTUVWXYZÄÖÑÜ§¿abcdefghijklmnopqrstuvwxyzäöñüà";
+    private static final String GSM_EXTENDED_LATIN = "\f^{}\\[~]|";
+
+    private static final byte[] LATIN_SEPTETS = new byte[256];
+
+    static {
+        for (int i = 0; i < GSM_BASIC_LATIN.length(); i++) {
+            LATIN_SEPTETS[GSM_BASIC_LATIN.charAt(i)] = BASIC;
+        }
+        for (int i = 0; i < GSM_EXTENDED_LATIN.length(); i++) {
+            LATIN_SEPTETS[GSM_EXTENDED_LATIN.charAt(i)] = EXTENDED;
+        }
+    }
+
+    private SmsSegmentCalculator() {
+    }
+
+    /** Septets the character takes in GSM-7, or 0 if it cannot be sent in GSM-7 at all. */
+    public static int septets(char c) {
+        if (c < 256) {
+            return LATIN_SEPTETS[c];
+        }
+        return switch (c) {
+            case 'Δ', 'Φ', 'Γ', 'Λ', 'Ω', 'Π', 'Ψ', 'Σ', 'Θ', 'Ξ' -> BASIC;
+            case '€' -> EXTENDED;
+            default -> NOT_GSM;
+        };
+    }
+
+    public static SmsSegmentInfo analyze(CharSequence text) {
+        int length = text.length();
+        if (length == 0) {
+            return new SmsSegmentInfo(SmsEncoding.GSM_7, 0, 0, 0);
+        }
+
+        // Segments are counted greedily because an escape sequence cannot straddle two segments
+        int limit = SmsEncoding.GSM_7.multiSegmentUnits();
+        int septets = 0;
+        int inSegment = 0;
+        int segments = 1;
+        int i = 0;
+        for (; i < length; i++) {
+            int width = septets(text.charAt(i));
+            if (width == NOT_GSM) {
+                break;
+            }
+            if (inSegment + width > limit) {
+                segments++;
+                inSegment = 0;
+            }
+            inSegment += width;
+            septets += width;
+        }
+        if (i == length) {
+            return new SmsSegmentInfo(SmsEncoding.GSM_7, septets,
+                    septets <= SmsEncoding.GSM_7.singleSegmentUnits() ? 1 : segments, 0);
+        }
+
+        // Likewise a surrogate pair is never split across UCS-2 segments
+        limit = SmsEncoding.UCS_2.multiSegmentUnits();
+        inSegment = 0;
+        segments = 1;
+        int nonGsm = 0;
+        for (int j = 0; j < length; j++) {
+            char c = text.charAt(j);
+            int width = Character.isHighSurrogate(c) && j + 1 < length
+                    && Character.isLowSurrogate(text.charAt(j + 1)) ? 2 : 1;
+            if (septets(c) == NOT_GSM) {
+                nonGsm++;
+            }
+            if (inSegment + width > limit) {
+                segments++;
+                inSegment = 0;
+            }
+            inSegment += width;
+            j += width - 1;
+        }
+        return new SmsSegmentInfo(SmsEncoding.UCS_2, length,
+                length <= SmsEncoding.UCS_2.singleSegmentUnits() ? 1 : segments, nonGsm);
+    }
+
+    /**
+     * Replace characters outside GSM-7 with close GSM-7 equivalents: typographic quotes and dashes,
+     * exotic spaces, accented letters via their base letter. Characters with no equivalent (emoji,
+     * non-Latin scripts) are kept, so the result may still need UCS-2. Returns the input instance when
+     * nothing was replaced.
+     */
+    public static String transliterate(String text) {
+        int length = text.length();
+        int first = 0;
+        while (first < length && septets(text.charAt(first)) != NOT_GSM) {
+            first++;
+        }
+        if (first == length) {
+            return text;
+        }
+
+        StringBuilder out = new StringBuilder(length + 8).append(text, 0, first);
+        boolean changed = false;
+        for (int i = first; i < length; i++) {
+            char c = text.charAt(i);
+            if (septets(c) != NOT_GSM) {
+                out.append(c);
+                continue;
+            }
+            String replacement = replacement(c);
+            if (replacement == null) {
+                replacement = stripAccents(c);
+            }
+            if (replacement == null) {
+                out.append(c);
+            } else {
+                out.append(replacement);
+                changed = true;
+            }
+        }
+        return changed ? out.toString() : text;
+    }
+
+    /**
+     * Split a multi-segment message into standalone messages of one segment each, preferring to break
+     * after whitespace. Standalone parts carry no concatenation header, so each holds the full 160
+     * (or 70) units, but handsets show them as separate messages that may arrive out of order. Always
+     * returns at least one part; a body that is only whitespace comes back unchanged as a single part.
+     */
+    public static List<String> split(String text, SmsSegmentInfo info) {
+        if (info.segments() <= 1) {
+            return List.of(text);
+        }
+
+        boolean gsm = info.encoding() == SmsEncoding.GSM_7;
+        int limit = info.encoding().singleSegmentUnits();
+        int length = text.length();
+        List<String> parts = new ArrayList<>(info.segments() + 1);
+        int start = 0;
+        int units = 0;
+        int lastBreak = -1;
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+            int chars = Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(text.charAt(i + 1)) ? 2 : 1;
+            int width = gsm ? septets(c) : chars;
+            if (units + width > limit) {
+                // Break at whitespace only if that keeps the part at least half full
+                int end = lastBreak > start + (i - start) / 2 ? lastBreak : i;
+                addPart(parts, text, start, end);
+                start = end;
+                i = end;
+                units = 0;
+                lastBreak = -1;
+                continue;
+            }
+            units += width;
+            i += chars;
+            if (Character.isWhitespace(c)) {
+                lastBreak = i;
+            }
+        }
+        addPart(parts, text, start, length);
+        return parts.isEmpty() ? List.of(text) : parts;
+    }
+
+    private static void addPart(List<String> parts, String text, int start, int end) {
+        String part = text.substring(start, end).strip();
+        if (!part.isEmpty()) {
+            parts.add(part);
+        }
+    }
+
+    private static String replacement(char c) {
+        return switch (c) {
+            case '‘', '’', '‚', '‛', '′', '`', '´' -> "'";
+            case '“', '”', '„', '‟', '″', '«', '»' -> "\"";
+            case '‐', '‑', '‒', '–', '—', '―', '−' -> "-";
+            case '…' -> "...";
+            case '\t', '\u00A0', '\u2002', '\u2003', '\u2004', '\u2005', '\u2006', '\u2007', '\u2008',
+                    '\u2009', '\u200A', '\u202F', '\u205F', '\u3000' -> " ";
+            case '\u200B', '\u200C', '\u200D', '\u2060', '\uFEFF', '\u00AD' -> "";
+            case '•', '·' -> "*";
+            case '©' -> "(c)";
+            case '®' -> "(R)";
+            case '™' -> "TM";
+            case '×' -> "x";
+            case '÷' -> "/";
+            default -> null;
+        };
+    }
+
+    // á -> a, ç -> c, Ł stays (no decomposition); only accepted if every remaining char is GSM-7
+    private static String stripAccents(char c) {
+        if (Character.isSurrogate(c)) {
+            return null;
+        }
+        String decomposed = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD);
+        StringBuilder base = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char d = decomposed.charAt(i);
+            if (Character.getType(d) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (septets(d) == NOT_GSM) {
+                return null;
+            }
+            base.append(d);
+        }
+        return base.isEmpty() ? null : base.toString();
+    }
+}
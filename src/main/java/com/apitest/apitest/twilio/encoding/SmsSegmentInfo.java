@@ -0,0 +1,10 @@
+package com.apitest.apitest.twilio.encoding;
+
+/**
+ * Result of analysing a message body.
+ *
+ * @param units septets for GSM-7, UTF-16 code units for UCS-2
+ * @param nonGsmCharacters characters that forced UCS-2; 0 for GSM-7 messages
+ */
+public record SmsSegmentInfo(SmsEncoding encoding, int units, int segments, int nonGsmCharacters) {
+}
@@ -0,0 +1,15 @@
+package com.apitest.apitest.twilio.encoding;
+
+import java.util.List;
+
+/**
+ * What will actually be handed to Twilio for one message: the (possibly transliterated) body, split
+ * into independent single-segment parts when splitting is on, and the analysis of that body.
+ */
+public record SmsSegmentPlan(List<String> parts, SmsSegmentInfo info, boolean transliterated) {
+
+    /** Segments billed and paced for the whole plan, across all parts. */
+    public int totalSegments() {
+        return parts.size() > 1 ? parts.size() : info.segments();
+    }
+}
@@ -0,0 +1,80 @@
+package com.apitest.apitest.twilio.encoding;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Decides how a message body is sent before it reaches {@code Message.creator}: optionally
+ * transliterated to GSM-7 so one stray character does not switch it to UCS-2, and optionally split
+ * into single-segment messages. Per-request flags override the configured defaults.
+ */
+@Component
+public class SmsSegmentPlanner {
+
+    private final DistributionSummary gsmSegments;
+    private final DistributionSummary ucs2Segments;
+    private final Counter transliteratedCounter;
+
+    @Value("${twilio.sms.encoding.transliterate:false}")
+    private boolean transliterateByDefault;
+
+    @Value("${twilio.sms.encoding.split:false}")
+    private boolean splitByDefault;
+
+    @Value("${twilio.sms.encoding.max-segments:10}")
+    private int maxSegments;
+
+    public SmsSegmentPlanner(MeterRegistry meterRegistry) {
+        this.gsmSegments = segmentSummary(meterRegistry, SmsEncoding.GSM_7);
+        this.ucs2Segments = segmentSummary(meterRegistry, SmsEncoding.UCS_2);
+        this.transliteratedCounter = Counter.builder("twilio.sms.transliterated")
+                .description("Messages whose body was rewritten to fit GSM-7")
+                .register(meterRegistry);
+    }
+
+    private static DistributionSummary segmentSummary(MeterRegistry meterRegistry, SmsEncoding encoding) {
+        return DistributionSummary.builder("twilio.sms.segments")
+                .description("Segments per planned message")
+                .tag("encoding", encoding.name())
+                .register(meterRegistry);
+    }
+
+    /** Analyse without recording metrics, e.g. to preview the cost of a body. */
+    public SmsSegmentPlan preview(String message, Boolean transliterate, Boolean split) {
+        String body = message == null ? "" : message;
+        boolean transliterated = false;
+        if (transliterate != null ? transliterate : transliterateByDefault) {
+            String gsm = SmsSegmentCalculator.transliterate(body);
+            // Same instance back means nothing was replaced
+            transliterated = gsm != body;
+            body = gsm;
+        }
+        SmsSegmentInfo info = SmsSegmentCalculator.analyze(body);
+        List<String> parts = (split != null ? split : splitByDefault)
+                ? SmsSegmentCalculator.split(body, info)
+                : List.of(body);
+        return new SmsSegmentPlan(parts, info, transliterated);
+    }
+
+    public SmsSegmentPlan plan(String message, Boolean transliterate, Boolean split) {
+        SmsSegmentPlan plan = preview(message, transliterate, split);
+        if (plan.transliterated()) {
+            transliteratedCounter.increment();
+        }
+        (plan.info().encoding() == SmsEncoding.GSM_7 ? gsmSegments : ucs2Segments).record(plan.totalSegments());
+        return plan;
+    }
+
+    public boolean exceedsLimit(SmsSegmentPlan plan) {
+        return maxSegments > 0 && plan.totalSegments() > maxSegments;
+    }
+
+    public int maxSegments() {
+        return maxSegments;
+    }
+}
@@ -0,0 +1,19 @@
+package com.apitest.apitest.twilio.model.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SmsBulkSendRequest {
+    @NotEmpty(message = "At least one message is required")
+    private List<@Valid SmsSendRequest> messages;
+}
@@ -0,0 +1,23 @@
+package com.apitest.apitest.twilio.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SmsBulkSendResponse {
+    private int total;
+    private int sent;
+    private int failed;
+    private long durationMs;
+    /** Segments across all messages, which is what Twilio bills and paces. */
+    private long totalSegments;
+    /** One result per requested message, in request order. */
+    private List<SmsSendResponse> results;
+}
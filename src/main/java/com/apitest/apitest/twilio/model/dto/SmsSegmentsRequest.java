@@ -0,0 +1,20 @@
+package com.apitest.apitest.twilio.model.dto;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SmsSegmentsRequest {
+    @NotNull(message = "Message body is required")
+    private String message;
+
+    private Boolean transliterate;
+
+    private Boolean split;
+}
@@ -0,0 +1,25 @@
+package com.apitest.apitest.twilio.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SmsSegmentsResponse {
+    private String encoding;
+    /** Septets for GSM_7, UTF-16 code units for UCS_2. */
+    private int units;
+    private int segments;
+    /** Characters that forced UCS_2. */
+    private int nonGsmCharacters;
+    private boolean transliterated;
+    /** Bodies as they would be sent; more than one only when splitting. */
+    private List<String> parts;
+    private boolean withinLimit;
+}
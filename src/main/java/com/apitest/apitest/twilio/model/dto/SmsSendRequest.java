@@ -16,4 +16,10 @@ public class SmsSendRequest {
 
     @NotBlank(message = "Message body is required")
     private String message;
+
+    /** Rewrite characters outside GSM-7 (smart quotes, accents...) before sending; null uses the configured default. */
+    private Boolean transliterate;
+
+    /** Send a multi-segment body as separate single-segment messages; null uses the configured default. */
+    private Boolean split;
 }
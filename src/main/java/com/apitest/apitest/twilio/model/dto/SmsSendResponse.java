@@ -5,6 +5,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
 @Data
 @Builder
 @NoArgsConstructor
@@ -16,4 +18,9 @@ public class SmsSendResponse {
     private String from;
     private String errorCode;
     private String errorMessage;
+    /** GSM_7 or UCS_2, as planned before sending. */
+    private String encoding;
+    private Integer segments;
+    /** Set when the body was split; {@code sid} is then the first part's. */
+    private List<String> partSids;
 }
@@ -0,0 +1,31 @@
+package com.apitest.apitest.twilio.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Latest known delivery state of one outbound SMS, fed by Twilio status callbacks.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "sms_delivery_statuses")
+public class SmsDeliveryStatus {
+    @Id
+    private String sid;
+    private String to;
+    private String from;
+    private String messagingServiceSid;
+    private String status;
+    /** Position of {@code status} in the delivery lifecycle; older callbacks never overwrite newer states. */
+    private int statusRank;
+    private String errorCode;
+    private Instant updatedAt;
+}
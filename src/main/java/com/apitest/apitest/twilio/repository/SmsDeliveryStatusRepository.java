@@ -0,0 +1,9 @@
+package com.apitest.apitest.twilio.repository;
+
+import com.apitest.apitest.twilio.model.entity.SmsDeliveryStatus;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface SmsDeliveryStatusRepository extends ReactiveMongoRepository<SmsDeliveryStatus, String> {
+}
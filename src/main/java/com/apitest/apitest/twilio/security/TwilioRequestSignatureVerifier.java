@@ -0,0 +1,29 @@
+package com.apitest.apitest.twilio.security;
+
+import com.twilio.security.RequestValidator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Checks {@code X-Twilio-Signature}: an HMAC-SHA1 with the account auth token over the exact URL
+ * Twilio called followed by the sorted POST parameters.
+ */
+@Component
+public class TwilioRequestSignatureVerifier {
+
+    private final RequestValidator validator;
+
+    public TwilioRequestSignatureVerifier(@Value("${twilio.auth.token:}") String authToken) {
+        this.validator = authToken == null || authToken.isBlank() ? null : new RequestValidator(authToken);
+    }
+
+    public boolean isConfigured() {
+        return validator != null;
+    }
+
+    public boolean isValid(String url, Map<String, String> params, String signature) {
+        return validator != null && signature != null && validator.validate(url, params, signature);
+    }
+}
@@ -0,0 +1,57 @@
+package com.apitest.apitest.twilio.sender;
+
+/**
+ * Token bucket that hands out reservations instead of rejecting: each call takes a token, even one
+ * that will only be refilled in the future, and returns how long the caller must wait before using
+ * it. Callers therefore queue in FIFO order per bucket and are paced exactly at the refill rate.
+ */
+public class TokenBucket {
+
+    private final double ratePerSecond;
+    private final double ratePerNano;
+    private final double capacity;
+    private double tokens;
+    private long refilledAt;
+
+    public TokenBucket(double ratePerSecond, int burst) {
+        this.ratePerSecond = ratePerSecond;
+        this.ratePerNano = ratePerSecond / 1_000_000_000d;
+        this.capacity = Math.max(1, burst);
+        this.tokens = capacity;
+        this.refilledAt = System.nanoTime();
+    }
+
+    /**
+     * Reserve one token, returning the wait in nanoseconds before it may be used (0 if available now).
+     */
+    public long reserve() {
+        return reserve(1);
+    }
+
+    /**
+     * Reserve several tokens at once, e.g. one per SMS segment, since carriers meter throughput in
+     * segments rather than messages.
+     */
+    public synchronized long reserve(int permits) {
+        refill(System.nanoTime());
+        tokens -= Math.max(1, permits);
+        return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / ratePerNano);
+    }
+
+    /**
+     * Nanoseconds until a token reserved now could be used, without reserving it.
+     */
+    public synchronized long backlogNanos() {
+        refill(System.nanoTime());
+        return tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / ratePerNano);
+    }
+
+    public double ratePerSecond() {
+        return ratePerSecond;
+    }
+
+    private void refill(long now) {
+        tokens = Math.min(capacity, tokens + (now - refilledAt) * ratePerNano);
+        refilledAt = now;
+    }
+}
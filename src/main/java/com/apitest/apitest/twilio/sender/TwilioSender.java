@@ -0,0 +1,17 @@
+package com.apitest.apitest.twilio.sender;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One sending identity: a phone number or a messaging-service SID, paced by its own token bucket.
+ */
+public record TwilioSender(String id, Type type, TokenBucket bucket, AtomicInteger waiting) {
+
+    public enum Type {
+        NUMBER, MESSAGING_SERVICE
+    }
+
+    public boolean isMessagingService() {
+        return type == Type.MESSAGING_SERVICE;
+    }
+}
@@ -0,0 +1,214 @@
+package com.apitest.apitest.twilio.sender;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Spreads outbound SMS over a pool of sender numbers and messaging services, each paced by a token
+ * bucket at its Twilio throughput (about 1 msg/s for a long code). A recipient keeps the sender it
+ * was first given so replies and threading stay on one number; new recipients go to the sender
+ * with the shortest backlog. Stickiness is kept in memory for the most recent recipients only.
+ */
+@Slf4j
+@Component
+public class TwilioSenderPool {
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Counter> sentCounters = new ConcurrentHashMap<>();
+    private final AtomicInteger totalWaiting = new AtomicInteger();
+    private Timer pacingDelay;
+
+    private List<TwilioSender> senders = List.of();
+    private Map<String, TwilioSender> sendersById = Map.of();
+    private Map<String, String> stickySenders;
+
+    @Value("${twilio.from.phone:}")
+    private String fromPhone;
+
+    @Value("${twilio.senders.numbers:}")
+    private String numbers;
+
+    @Value("${twilio.senders.messaging-service-sids:}")
+    private String messagingServiceSids;
+
+    @Value("${twilio.senders.number-rate-per-second:1.0}")
+    private double numberRatePerSecond;
+
+    @Value("${twilio.senders.messaging-service-rate-per-second:10.0}")
+    private double messagingServiceRatePerSecond;
+
+    @Value("${twilio.senders.burst:1}")
+    private int burst;
+
+    @Value("${twilio.senders.sticky-recipients:100000}")
+    private int stickyRecipients;
+
+    public TwilioSenderPool(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    void init() {
+        List<TwilioSender> pool = new ArrayList<>();
+        List<String> configuredNumbers = split(numbers);
+        if (configuredNumbers.isEmpty() && split(messagingServiceSids).isEmpty() && !fromPhone.isBlank()) {
+            configuredNumbers = List.of(fromPhone.trim());
+        }
+        for (String number : configuredNumbers) {
+            pool.add(register(number, TwilioSender.Type.NUMBER, numberRatePerSecond));
+        }
+        for (String sid : split(messagingServiceSids)) {
+            pool.add(register(sid, TwilioSender.Type.MESSAGING_SERVICE, messagingServiceRatePerSecond));
+        }
+        senders = List.copyOf(pool);
+        Map<String, TwilioSender> byId = new LinkedHashMap<>();
+        pool.forEach(sender -> byId.put(sender.id(), sender));
+        sendersById = byId;
+
+        int maxSticky = Math.max(1, stickyRecipients);
+        stickySenders = new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > maxSticky;
+            }
+        };
+
+        pacingDelay = Timer.builder("twilio.sender.pacing.delay")
+                .description("Time an SMS waited for its sender's rate budget")
+                .register(meterRegistry);
+        Gauge.builder("twilio.sender.queue.depth.total", totalWaiting, AtomicInteger::get)
+                .description("SMS waiting for any sender's rate budget")
+                .register(meterRegistry);
+        log.info("Twilio sender pool: {} number(s), {} messaging service(s)", configuredNumbers.size(),
+                split(messagingServiceSids).size());
+    }
+
+    private TwilioSender register(String id, TwilioSender.Type type, double ratePerSecond) {
+        TwilioSender sender = new TwilioSender(id, type, new TokenBucket(ratePerSecond, burst), new AtomicInteger());
+        Gauge.builder("twilio.sender.queue.depth", sender.waiting(), AtomicInteger::get)
+                .description("SMS waiting for this sender's rate budget")
+                .tag("sender", id)
+                .register(meterRegistry);
+        Gauge.builder("twilio.sender.backlog", sender.bucket(), bucket -> bucket.backlogNanos() / 1_000_000d)
+                .description("How long a message queued on this sender now would wait")
+                .baseUnit("milliseconds")
+                .tag("sender", id)
+                .register(meterRegistry);
+        sentCounters.put(id, Counter.builder("twilio.sender.sent")
+                .description("SMS handed to Twilio from this sender; its rate is the per-sender send rate")
+                .tag("sender", id)
+                .register(meterRegistry));
+        return sender;
+    }
+
+    public boolean isEmpty() {
+        return senders.isEmpty();
+    }
+
+    /**
+     * Pick the sender for the recipient and block until that sender's rate allows one more message.
+     * Intended for virtual threads, where the wait is cheap.
+     *
+     * @throws IllegalStateException if no sender is configured
+     */
+    public TwilioSender acquire(String recipient) throws InterruptedException {
+        return acquire(recipient, 1);
+    }
+
+    /**
+     * As {@link #acquire(String)}, charging the sender's budget for {@code segments} segments.
+     */
+    public TwilioSender acquire(String recipient, int segments) throws InterruptedException {
+        TwilioSender sender = select(recipient);
+        long waitNanos = sender.bucket().reserve(segments);
+        if (waitNanos > 0) {
+            sender.waiting().incrementAndGet();
+            totalWaiting.incrementAndGet();
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } finally {
+                sender.waiting().decrementAndGet();
+                totalWaiting.decrementAndGet();
+            }
+        }
+        pacingDelay.record(Duration.ofNanos(waitNanos));
+        return sender;
+    }
+
+    public void recordSent(TwilioSender sender) {
+        Counter counter = sentCounters.get(sender.id());
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+
+    /**
+     * Rough time for the pool to work through its current backlog plus {@code segments} more, assuming
+     * they spread over every sender. Sticky recipients can make the real wait on one sender longer.
+     */
+    public Duration estimatedDrainTime(long segments) {
+        double rate = 0;
+        double owed = 0;
+        for (TwilioSender sender : senders) {
+            double senderRate = sender.bucket().ratePerSecond();
+            rate += senderRate;
+            owed += sender.bucket().backlogNanos() / 1_000_000_000d * senderRate;
+        }
+        if (rate <= 0) {
+            return Duration.ZERO;
+        }
+        return Duration.ofNanos((long) Math.ceil((owed + Math.max(0, segments)) / rate * 1_000_000_000d));
+    }
+
+    private TwilioSender select(String recipient) {
+        if (senders.isEmpty()) {
+            throw new IllegalStateException("No Twilio sender number or messaging service configured");
+        }
+        synchronized (stickySenders) {
+            TwilioSender sticky = sendersById.get(stickySenders.get(recipient));
+            if (sticky != null) {
+                return sticky;
+            }
+            TwilioSender chosen = leastBacklogged();
+            stickySenders.put(recipient, chosen.id());
+            return chosen;
+        }
+    }
+
+    private TwilioSender leastBacklogged() {
+        TwilioSender best = senders.get(0);
+        long bestBacklog = best.bucket().backlogNanos();
+        for (int i = 1; i < senders.size() && bestBacklog > 0; i++) {
+            TwilioSender candidate = senders.get(i);
+            long backlog = candidate.bucket().backlogNanos();
+            if (backlog < bestBacklog) {
+                best = candidate;
+                bestBacklog = backlog;
+            }
+        }
+        return best;
+    }
+
+    private static List<String> split(String value) {
+        if (value == null || value.isBlank()) {
+            return List.of();
+        }
+        return Arrays.stream(value.split(",")).map(String::trim).filter(s -> !s.isEmpty()).distinct().toList();
+    }
+}
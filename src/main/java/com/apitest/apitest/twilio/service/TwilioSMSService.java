@@ -4,7 +4,21 @@ import com.apitest.apitest.twilio.model.dto.SmsSendRequest;
 import com.apitest.apitest.twilio.model.dto.SmsSendResponse;
 import com.apitest.apitest.twilio.model.dto.SmsTestRequest;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 public interface TwilioSMSService {
     SmsSendResponse sendSms(SmsSendRequest request);
     SmsSendResponse sendTestSms(SmsTestRequest request);
+
+    /**
+     * Send on a virtual thread without blocking the caller. Twilio errors complete with a FAILED response.
+     */
+    CompletableFuture<SmsSendResponse> sendSmsAsync(SmsSendRequest request);
+
+    /**
+     * Fan the messages out concurrently, never more than the configured number in flight, and collect
+     * one response per message in request order.
+     */
+    CompletableFuture<List<SmsSendResponse>> sendBulkAsync(List<SmsSendRequest> requests);
 }
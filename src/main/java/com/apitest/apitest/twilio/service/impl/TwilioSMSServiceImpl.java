@@ -1,18 +1,38 @@
 package com.apitest.apitest.twilio.service.impl;
 
+import com.apitest.apitest.twilio.encoding.SmsSegmentPlan;
+import com.apitest.apitest.twilio.encoding.SmsSegmentPlanner;
 import com.apitest.apitest.twilio.model.dto.SmsSendRequest;
 import com.apitest.apitest.twilio.model.dto.SmsSendResponse;
 import com.apitest.apitest.twilio.model.dto.SmsTestRequest;
+import com.apitest.apitest.twilio.sender.TwilioSender;
+import com.apitest.apitest.twilio.sender.TwilioSenderPool;
 import com.apitest.apitest.twilio.service.TwilioSMSService;
 import com.twilio.Twilio;
 import com.twilio.exception.ApiException;
+import com.twilio.exception.TwilioException;
+import com.twilio.http.NetworkHttpClient;
+import com.twilio.http.TwilioRestClient;
 import com.twilio.rest.api.v2010.account.Message;
+import com.twilio.rest.api.v2010.account.MessageCreator;
 import com.twilio.type.PhoneNumber;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
 @Slf4j
 @Service
 @RequiredArgsConstructor
@@ -27,13 +47,39 @@ public class TwilioSMSServiceImpl implements TwilioSMSService {
     @Value("${twilio.from.phone}")
     private String fromPhone;
 
+    @Value("${twilio.status-callback.url:}")
+    private String statusCallbackUrl;
+
+    @Value("${twilio.sms.max-concurrency:50}")
+    private int maxConcurrency;
+
+    @Value("${twilio.sms.connect-timeout-ms:10000}")
+    private int connectTimeoutMs;
+
+    @Value("${twilio.sms.socket-timeout-ms:30000}")
+    private int socketTimeoutMs;
+
     private volatile boolean initialized = false;
 
+    // Client used by the concurrent paths; its connection pool matches the concurrency cap
+    private volatile TwilioRestClient restClient;
+
+    private volatile Semaphore inFlight;
+
+    // One cheap virtual thread per send; the semaphore, not the executor, bounds concurrency
+    private final ExecutorService sendExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final TwilioSenderPool senderPool;
+
+    private final SmsSegmentPlanner segmentPlanner;
+
     private void initIfNecessary() {
         if (!initialized) {
             synchronized (this) {
                 if (!initialized) {
                     Twilio.init(accountSid, authToken);
+                    restClient = buildRestClient();
+                    inFlight = new Semaphore(Math.max(1, maxConcurrency));
                     initialized = true;
                     log.debug("Initialized Twilio client with account SID ending: {}", 
                             accountSid != null && accountSid.length() > 4 ? accountSid.substring(accountSid.length() - 4) : "null");
@@ -42,35 +88,180 @@ public class TwilioSMSServiceImpl implements TwilioSMSService {
         }
     }
 
+    /**
+     * The SDK's default client allows 20 connections per route, which would cap bulk sends well below
+     * the configured concurrency and leave the rest waiting inside the pool.
+     */
+    private TwilioRestClient buildRestClient() {
+        int connections = Math.max(1, maxConcurrency);
+        PoolingHttpClientConnectionManager pool = new PoolingHttpClientConnectionManager();
+        pool.setMaxTotal(connections);
+        pool.setDefaultMaxPerRoute(connections);
+        HttpClientBuilder httpClient = HttpClientBuilder.create()
+                .useSystemProperties()
+                .setConnectionManager(pool)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout(connectTimeoutMs)
+                        .setConnectionRequestTimeout(connectTimeoutMs)
+                        .setSocketTimeout(socketTimeoutMs)
+                        .build());
+        return new TwilioRestClient.Builder(accountSid, authToken)
+                .httpClient(new NetworkHttpClient(httpClient))
+                .build();
+    }
+
+    @Override
+    public CompletableFuture<SmsSendResponse> sendSmsAsync(SmsSendRequest request) {
+        initIfNecessary();
+        return CompletableFuture.supplyAsync(() -> sendWithPermit(request), sendExecutor);
+    }
+
+    @Override
+    public CompletableFuture<List<SmsSendResponse>> sendBulkAsync(List<SmsSendRequest> requests) {
+        initIfNecessary();
+        List<CompletableFuture<SmsSendResponse>> sends = new ArrayList<>(requests.size());
+        for (SmsSendRequest request : requests) {
+            // An unexpected exception becomes a FAILED entry instead of failing the whole bulk
+            sends.add(CompletableFuture.supplyAsync(() -> sendWithPermit(request), sendExecutor)
+                    .exceptionally(e -> {
+                        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                        log.error("Unexpected error sending SMS to {}: {}", request.getTo(), cause.getMessage(), cause);
+                        return failed(request.getTo(), fromPhone, null, String.valueOf(cause.getMessage()));
+                    }));
+        }
+        return CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new))
+                .thenApply(done -> sends.stream().map(CompletableFuture::join).toList());
+    }
+
+    /**
+     * Wait for the sender's rate budget first and only then take a concurrency permit, so messages
+     * queued behind a busy number do not hold slots that other senders could use.
+     */
+    private SmsSendResponse sendWithPermit(SmsSendRequest request) {
+        SmsSegmentPlan plan = segmentPlanner.plan(request.getMessage(), request.getTransliterate(), request.getSplit());
+        SmsSendResponse rejected = reject(request, plan);
+        if (rejected != null) {
+            return rejected;
+        }
+        TwilioSender sender;
+        try {
+            sender = senderPool.acquire(request.getTo(), plan.totalSegments());
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return failed(request.getTo(), fromPhone, null, "Interrupted before sending");
+        } catch (IllegalStateException e) {
+            return failed(request.getTo(), fromPhone, null, e.getMessage());
+        }
+        try {
+            return send(request, plan, sender);
+        } finally {
+            inFlight.release();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sendExecutor.shutdown();
+    }
+
     @Override
     public SmsSendResponse sendSms(SmsSendRequest request) {
         initIfNecessary();
+        SmsSegmentPlan plan = segmentPlanner.plan(request.getMessage(), request.getTransliterate(), request.getSplit());
+        SmsSendResponse rejected = reject(request, plan);
+        if (rejected != null) {
+            return rejected;
+        }
         try {
-            Message message = Message.creator(
-                    new PhoneNumber(request.getTo()),
-                    new PhoneNumber(fromPhone),
-                    request.getMessage()
-            ).create();
+            return send(request, plan, senderPool.acquire(request.getTo(), plan.totalSegments()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return failed(request.getTo(), fromPhone, null, "Interrupted before sending");
+        } catch (IllegalStateException e) {
+            return failed(request.getTo(), fromPhone, null, e.getMessage());
+        }
+    }
 
-            return SmsSendResponse.builder()
-                    .sid(message.getSid())
-                    .status(message.getStatus() != null ? message.getStatus().toString() : null)
-                    .to(message.getTo())
-                    .from(message.getFrom() != null ? message.getFrom().toString() : fromPhone)
-                    .errorCode(message.getErrorCode() != null ? message.getErrorCode().toString() : null)
-                    .errorMessage(message.getErrorMessage())
-                    .build();
+    private SmsSendResponse send(SmsSendRequest request, SmsSegmentPlan plan, TwilioSender sender) {
+        List<String> sids = new ArrayList<>(plan.parts().size());
+        try {
+            PhoneNumber to = new PhoneNumber(request.getTo());
+            Message first = null;
+            for (String part : plan.parts()) {
+                MessageCreator creator = sender.isMessagingService()
+                        ? Message.creator(to, sender.id(), part)
+                        : Message.creator(to, new PhoneNumber(sender.id()), part);
+                if (statusCallbackUrl != null && !statusCallbackUrl.isBlank()) {
+                    creator.setStatusCallback(statusCallbackUrl);
+                }
+                Message message = creator.create(restClient);
+                senderPool.recordSent(sender);
+                sids.add(message.getSid());
+                if (first == null) {
+                    first = message;
+                }
+            }
+
+            return withPlan(SmsSendResponse.builder()
+                    .sid(first.getSid())
+                    .status(first.getStatus() != null ? first.getStatus().toString() : null)
+                    .to(first.getTo())
+                    .from(first.getFrom() != null ? first.getFrom().toString() : sender.id())
+                    .errorCode(first.getErrorCode() != null ? first.getErrorCode().toString() : null)
+                    .errorMessage(first.getErrorMessage())
+                    .build(), plan, sids);
         } catch (ApiException ex) {
-            log.error("Failed to send SMS via Twilio: {}", ex.getMessage(), ex);
-            return SmsSendResponse.builder()
-                    .sid(null)
-                    .status("FAILED")
-                    .to(request.getTo())
-                    .from(fromPhone)
-                    .errorCode(String.valueOf(ex.getStatusCode()))
-                    .errorMessage(ex.getMessage())
-                    .build();
+            log.error("Failed to send SMS via Twilio after {} of {} part(s): {}", sids.size(), plan.parts().size(),
+                    ex.getMessage(), ex);
+            return withPlan(failed(request.getTo(), sender.id(), String.valueOf(ex.getStatusCode()), ex.getMessage()),
+                    plan, sids);
+        } catch (TwilioException ex) {
+            // Connection and timeout failures; reported per message so one bad send cannot fail a bulk request
+            log.error("Failed to reach Twilio for SMS to {}: {}", request.getTo(), ex.getMessage());
+            return withPlan(failed(request.getTo(), sender.id(), null, ex.getMessage()), plan, sids);
+        }
+    }
+
+    private static SmsSendResponse withPlan(SmsSendResponse response, SmsSegmentPlan plan, List<String> sids) {
+        response.setEncoding(plan.info().encoding().name());
+        response.setSegments(plan.totalSegments());
+        if (plan.parts().size() > 1) {
+            response.setPartSids(sids);
         }
+        return response;
+    }
+
+    /**
+     * FAILED response for a plan that must not be sent, or null if it can go out. Bodies that are blank
+     * (for instance only non-breaking spaces, which transliterate to plain ones) are never sent.
+     */
+    private SmsSendResponse reject(SmsSendRequest request, SmsSegmentPlan plan) {
+        if (plan.parts().stream().allMatch(String::isBlank)) {
+            return withPlan(failed(request.getTo(), fromPhone, null, "Message body is empty"
+                    + (plan.transliterated() ? " after transliteration" : "")), plan, List.of());
+        }
+        if (segmentPlanner.exceedsLimit(plan)) {
+            return tooManySegments(request, plan);
+        }
+        return null;
+    }
+
+    private SmsSendResponse tooManySegments(SmsSendRequest request, SmsSegmentPlan plan) {
+        return withPlan(failed(request.getTo(), fromPhone, null, "Message needs " + plan.totalSegments()
+                + " " + plan.info().encoding() + " segments; at most " + segmentPlanner.maxSegments() + " are allowed"),
+                plan, List.of());
+    }
+
+    private SmsSendResponse failed(String to, String from, String errorCode, String errorMessage) {
+        return SmsSendResponse.builder()
+                .sid(null)
+                .status("FAILED")
+                .to(to)
+                .from(from)
+                .errorCode(errorCode)
+                .errorMessage(errorMessage)
+                .build();
     }
 
     @Override
@@ -0,0 +1,208 @@
+package com.apitest.apitest.twilio.status;
+
+import com.apitest.apitest.twilio.model.entity.SmsDeliveryStatus;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Coalesces Twilio status callbacks in memory, keeping only the most advanced state per message SID,
+ * and writes them to Mongo as one unordered bulk of upserts every {@code flush-interval-ms} or as
+ * soon as {@code flush-size} messages are buffered. A burst of callbacks for the same message
+ * (queued, sent, delivered) therefore costs one write, and a campaign costs a handful of bulks per
+ * second instead of one write per request. Each bulk carries at most {@code flush-size} messages; a
+ * larger backlog is written in consecutive bulks. At most {@code max-buffered} messages are held, and
+ * callbacks for new messages beyond that are refused so Twilio retries them later.
+ */
+@Slf4j
+@Component
+public class SmsStatusBuffer {
+
+    // Lifecycle order; terminal states share the top rank so the first one reported wins
+    private static final Map<String, Integer> STATUS_RANK = Map.ofEntries(
+            Map.entry("accepted", 1), Map.entry("scheduled", 1), Map.entry("queued", 2),
+            Map.entry("sending", 3), Map.entry("sent", 4), Map.entry("receiving", 4), Map.entry("received", 5),
+            Map.entry("delivered", 6), Map.entry("undelivered", 6), Map.entry("failed", 6),
+            Map.entry("canceled", 6), Map.entry("read", 7));
+
+    private static final int DUPLICATE_KEY = 11000;
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final Map<String, SmsDeliveryStatus> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushing = new AtomicBoolean(false);
+    private final Counter receivedCounter;
+    private final Counter writtenCounter;
+    private final Counter staleCounter;
+    private final Counter rejectedCounter;
+    private final Timer flushTimer;
+
+    @Value("${twilio.status-callback.flush-size:1000}")
+    private int flushSize;
+
+    @Value("${twilio.status-callback.max-buffered:100000}")
+    private int maxBuffered;
+
+    public SmsStatusBuffer(ReactiveMongoTemplate mongoTemplate, MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.receivedCounter = Counter.builder("twilio.status.received")
+                .description("Status callbacks accepted")
+                .register(meterRegistry);
+        this.writtenCounter = Counter.builder("twilio.status.written")
+                .description("Message states upserted to Mongo")
+                .register(meterRegistry);
+        this.staleCounter = Counter.builder("twilio.status.stale")
+                .description("Buffered states skipped because Mongo already had a later one")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("twilio.status.rejected")
+                .description("Status callbacks refused because the buffer was full")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("twilio.status.flush")
+                .description("Duration of one bulk status write")
+                .register(meterRegistry);
+        Gauge.builder("twilio.status.buffered", pending, Map::size)
+                .description("Messages with a status waiting to be written")
+                .register(meterRegistry);
+    }
+
+    public static int rank(String status) {
+        return status == null ? 0 : STATUS_RANK.getOrDefault(status.toLowerCase(Locale.ROOT), 0);
+    }
+
+    /**
+     * Buffers the update, merging it with any state already held for the message. Returns false without
+     * buffering when the buffer is full and holds nothing for this message yet.
+     */
+    public boolean add(SmsDeliveryStatus update) {
+        if (pending.size() >= maxBuffered && !pending.containsKey(update.getSid())) {
+            rejectedCounter.increment();
+            return false;
+        }
+        receivedCounter.increment();
+        update.setStatusRank(rank(update.getStatus()));
+        pending.merge(update.getSid(), update, SmsStatusBuffer::later);
+        if (pending.size() >= flushSize) {
+            flush();
+        }
+        return true;
+    }
+
+    @Scheduled(fixedDelayString = "${twilio.status-callback.flush-interval-ms:500}")
+    public void flush() {
+        if (pending.isEmpty() || !flushing.compareAndSet(false, true)) {
+            return;
+        }
+        List<SmsDeliveryStatus> batch = drain();
+        Timer.Sample sample = Timer.start();
+        write(batch)
+                .doFinally(signal -> {
+                    sample.stop(flushTimer);
+                    flushing.set(false);
+                    // A full bulk may have left more behind; keep going until less than one bulk is buffered
+                    if (signal == SignalType.ON_COMPLETE && pending.size() >= flushSize) {
+                        flush();
+                    }
+                })
+                .subscribe(v -> { }, e -> {
+                    log.error("Writing {} SMS statuses failed, keeping them for the next flush: {}",
+                            batch.size(), e.getMessage());
+                    batch.forEach(update -> pending.merge(update.getSid(), update, SmsStatusBuffer::later));
+                });
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        List<SmsDeliveryStatus> batch = drain();
+        while (!batch.isEmpty()) {
+            write(batch).timeout(Duration.ofSeconds(10)).onErrorResume(e -> Mono.empty()).block();
+            batch = drain();
+        }
+    }
+
+    private List<SmsDeliveryStatus> drain() {
+        List<SmsDeliveryStatus> batch = new ArrayList<>(Math.min(pending.size(), flushSize));
+        Iterator<String> sids = pending.keySet().iterator();
+        while (batch.size() < flushSize && sids.hasNext()) {
+            SmsDeliveryStatus update = pending.remove(sids.next());
+            if (update != null) {
+                batch.add(update);
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Each upsert only matches a stored state of lower rank. When the stored state is already newer the
+     * filter misses, the upsert collides on _id, and that duplicate-key error just means "stale".
+     */
+    private Mono<Void> write(List<SmsDeliveryStatus> batch) {
+        if (batch.isEmpty()) {
+            return Mono.empty();
+        }
+        ReactiveBulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, SmsDeliveryStatus.class);
+        for (SmsDeliveryStatus update : batch) {
+            Query query = new Query(Criteria.where("_id").is(update.getSid()).and("statusRank").lt(update.getStatusRank()));
+            Update set = new Update()
+                    .set("status", update.getStatus())
+                    .set("statusRank", update.getStatusRank())
+                    .set("updatedAt", update.getUpdatedAt() != null ? update.getUpdatedAt() : Instant.now());
+            if (update.getTo() != null) set.set("to", update.getTo());
+            if (update.getFrom() != null) set.set("from", update.getFrom());
+            if (update.getMessagingServiceSid() != null) set.set("messagingServiceSid", update.getMessagingServiceSid());
+            if (update.getErrorCode() != null) set.set("errorCode", update.getErrorCode());
+            bulk.upsert(query, set);
+        }
+        return bulk.execute()
+                .doOnNext(result -> writtenCounter.increment(result.getUpserts().size() + result.getModifiedCount()))
+                .then()
+                .onErrorResume(e -> {
+                    List<BulkWriteError> errors = writeErrors(e);
+                    if (errors == null || errors.stream().anyMatch(error -> error.getCode() != DUPLICATE_KEY)) {
+                        return Mono.error(e);
+                    }
+                    staleCounter.increment(errors.size());
+                    writtenCounter.increment(batch.size() - errors.size());
+                    return Mono.empty();
+                });
+    }
+
+    private static List<BulkWriteError> writeErrors(Throwable e) {
+        if (e instanceof BulkOperationException bulkError) {
+            return bulkError.getErrors();
+        }
+        if (e instanceof MongoBulkWriteException bulkError) {
+            return bulkError.getWriteErrors();
+        }
+        return null;
+    }
+
+    static SmsDeliveryStatus later(SmsDeliveryStatus current, SmsDeliveryStatus incoming) {
+        return incoming.getStatusRank() > current.getStatusRank() ? incoming : current;
+    }
+}
@@ -0,0 +1,36 @@
+package com.apitest.apitest.util;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Delay before the next attempt of a failed job: doubling from {@code initial} per attempt and capped
+ * at {@code max}. Shared by the Mongo-backed queues so they retry on the same schedule.
+ */
+public final class RetryBackoff {
+
+    // 2^20 times the initial delay is far beyond any sensible cap
+    private static final int MAX_SHIFT = 20;
+
+    private RetryBackoff() {
+    }
+
+    /**
+     * @param attempts attempts made so far, 1 after the first failure
+     */
+    public static Duration exponential(int attempts, Duration initial, Duration max) {
+        long initialMs = Math.max(1, initial.toMillis());
+        int shift = Math.min(Math.max(0, attempts - 1), MAX_SHIFT);
+        return Duration.ofMillis(Math.min(initialMs << shift, Math.max(initialMs, max.toMillis())));
+    }
+
+    /**
+     * Like {@link #exponential} but picks uniformly between {@code initial} and that delay ("full
+     * jitter"), so jobs that failed together during an outage do not retry in synchronized waves.
+     */
+    public static Duration withJitter(int attempts, Duration initial, Duration max) {
+        long ceiling = exponential(attempts, initial, max).toMillis();
+        long floor = Math.min(Math.max(1, initial.toMillis()), ceiling);
+        return Duration.ofMillis(ThreadLocalRandom.current().nextLong(floor, ceiling + 1));
+    }
+}
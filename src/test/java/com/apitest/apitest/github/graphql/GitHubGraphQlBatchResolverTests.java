@@ -0,0 +1,112 @@
+package com.apitest.apitest.github.graphql;
+
+import com.apitest.apitest.github.model.dto.GitHubPathRef;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the resolver against a stub GraphQL endpoint served by the JDK HTTP server.
+ */
+class GitHubGraphQlBatchResolverTests {
+
+    private HttpServer server;
+    private final List<String> queries = new CopyOnWriteArrayList<>();
+    private volatile int status = 200;
+    private volatile String responseBody = "{}";
+
+    private final GitHubPathRef readme = new GitHubPathRef("octo", "app", "refs/heads/main", "README.md");
+    private final GitHubPathRef pom = new GitHubPathRef("octo", "app", "refs/heads/main", "pom.xml");
+    private final GitHubPathRef missing = new GitHubPathRef("octo", "gone", "refs/heads/main", "a.txt");
+
+    @BeforeEach
+    void startStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/graphql", exchange -> {
+            queries.add(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            byte[] body = responseBody.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopStub() {
+        server.stop(0);
+    }
+
+    private GitHubGraphQlBatchResolver resolver(int batchSize) {
+        String url = "http://localhost:" + server.getAddress().getPort() + "/graphql";
+        return new GitHubGraphQlBatchResolver(WebClient.create(), new ObjectMapper(), url, batchSize);
+    }
+
+    @Test
+    void resolvesAllItemsOfAChunkWithOneQuery() {
+        responseBody = """
+                {"data": {
+                  "q0": {"object": {"history": {"nodes": [{"oid": "sha-readme"}]}}},
+                  "q1": {"object": {"history": {"nodes": []}}}
+                }}""";
+        AtomicInteger fallbackCalls = new AtomicInteger();
+
+        Map<GitHubPathRef, String> shas = resolver(50)
+                .resolve("t", List.of(readme, pom), ref -> {
+                    fallbackCalls.incrementAndGet();
+                    return Mono.empty();
+                })
+                .block();
+
+        assertThat(shas).containsExactly(Map.entry(readme, "sha-readme"));
+        assertThat(queries).hasSize(1);
+        assertThat(queries.get(0)).contains("q0: repository", "q1: repository", "README.md", "pom.xml");
+        assertThat(fallbackCalls).hasValue(0);
+    }
+
+    @Test
+    void fallsBackToRestForAliasesWithErrors() {
+        responseBody = """
+                {"data": {
+                  "q0": {"object": {"history": {"nodes": [{"oid": "sha-readme"}]}}},
+                  "q1": null
+                },
+                "errors": [{"type": "NOT_FOUND", "path": ["q1"], "message": "Could not resolve to a Repository"}]}""";
+
+        Map<GitHubPathRef, String> shas = resolver(50)
+                .resolve("t", List.of(readme, missing), ref -> Mono.just("rest-" + ref.getPath()))
+                .block();
+
+        assertThat(shas).containsEntry(readme, "sha-readme").containsEntry(missing, "rest-a.txt");
+    }
+
+    @Test
+    void fallsBackToRestWhenTheQueryFails() {
+        status = 502;
+        responseBody = "{\"message\": \"Bad Gateway\"}";
+
+        Map<GitHubPathRef, String> shas = resolver(1)
+                .resolve("t", List.of(readme, pom), ref -> Mono.just("rest-" + ref.getPath()))
+                .block();
+
+        assertThat(shas).containsEntry(readme, "rest-README.md").containsEntry(pom, "rest-pom.xml");
+        assertThat(queries).hasSize(2);
+    }
+}
@@ -0,0 +1,145 @@
+package com.apitest.apitest.github.index;
+
+import com.apitest.apitest.github.model.entity.GitHubFileWatch;
+import com.apitest.apitest.github.repository.GitHubFileWatchRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class GitHubWatchIndexTests {
+
+    private static final String MAIN = "refs/heads/main";
+
+    private GitHubWatchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new GitHubWatchIndex(mock(GitHubFileWatchRepository.class));
+    }
+
+    @Test
+    void matchesExactPathsIgnoringALeadingSlash() {
+        GitHubFileWatch readme = watch("1", "/README.md");
+        index.replaceAll(List.of(readme));
+
+        assertThat(match("README.md")).containsExactly(readme);
+        assertThat(match("docs/README.md")).isEmpty();
+    }
+
+    @Test
+    void directoryWatchesMatchEverythingBelowThem() {
+        GitHubFileWatch slash = watch("1", "src/");
+        GitHubFileWatch stars = watch("2", "docs/**");
+        index.replaceAll(List.of(slash, stars));
+
+        assertThat(match("src/main/App.java")).containsExactly(slash);
+        assertThat(match("docs/a/b/c.md")).containsExactly(stars);
+        assertThat(match("srcs/App.java")).isEmpty();
+    }
+
+    @Test
+    void singleStarAndQuestionMarkStayWithinOneSegment() {
+        GitHubFileWatch star = watch("1", "src/*.java");
+        GitHubFileWatch question = watch("2", "v?.txt");
+        index.replaceAll(List.of(star, question));
+
+        assertThat(match("src/App.java")).containsExactly(star);
+        assertThat(match("src/main/App.java")).isEmpty();
+        assertThat(match("v1.txt")).containsExactly(question);
+        assertThat(match("v10.txt")).isEmpty();
+    }
+
+    @Test
+    void doubleStarSlashMatchesZeroOrMoreDirectories() {
+        GitHubFileWatch watch = watch("1", "src/**/pom.xml");
+        index.replaceAll(List.of(watch));
+
+        assertThat(match("src/pom.xml")).containsExactly(watch);
+        assertThat(match("src/a/b/pom.xml")).containsExactly(watch);
+        assertThat(match("pom.xml")).isEmpty();
+    }
+
+    @Test
+    void braceAlternationMatchesEachAlternative() {
+        GitHubFileWatch watch = watch("1", "src/*.{js,ts}");
+        index.replaceAll(List.of(watch));
+
+        assertThat(match("src/app.js")).containsExactly(watch);
+        assertThat(match("src/app.ts")).containsExactly(watch);
+        assertThat(match("src/app.jsx")).isEmpty();
+    }
+
+    @Test
+    void characterClassesMatchOneCharacterAndCanBeNegated() {
+        GitHubFileWatch digits = watch("1", "file[0-9].txt");
+        GitHubFileWatch notDot = watch("2", "conf/[!.]*");
+        index.replaceAll(List.of(digits, notDot));
+
+        assertThat(match("file7.txt")).containsExactly(digits);
+        assertThat(match("fileA.txt")).isEmpty();
+        assertThat(match("conf/app.yml")).containsExactly(notDot);
+        assertThat(match("conf/.env")).isEmpty();
+    }
+
+    @Test
+    void unterminatedClassesAndBracesAreLiterals() {
+        GitHubFileWatch bracket = watch("1", "a[b*");
+        GitHubFileWatch brace = watch("2", "c{d*");
+        index.replaceAll(List.of(bracket, brace));
+
+        assertThat(match("a[bc")).containsExactly(bracket);
+        assertThat(match("c{dx")).containsExactly(brace);
+    }
+
+    @Test
+    void ownerAndRepoAreCaseInsensitiveAndBranchesAreNormalised() {
+        GitHubFileWatch watch = watch("1", "README.md");
+        index.replaceAll(List.of(watch));
+
+        assertThat(index.match("Octo", "Hello", MAIN, List.of("README.md"))).containsExactly(watch);
+        assertThat(index.match("octo", "hello", "refs/heads/dev", List.of("README.md"))).isEmpty();
+    }
+
+    @Test
+    void upsertOfAnInactiveWatchRemovesIt() {
+        GitHubFileWatch watch = watch("1", "README.md");
+        index.upsert(watch);
+        assertThat(index.size()).isEqualTo(1);
+
+        watch.setActive(false);
+        index.upsert(watch);
+
+        assertThat(index.size()).isZero();
+        assertThat(match("README.md")).isEmpty();
+    }
+
+    @Test
+    void removeDropsTheWatchFromItsBranch() {
+        GitHubFileWatch kept = watch("1", "src/");
+        GitHubFileWatch removed = watch("2", "src/*.java");
+        index.replaceAll(List.of(kept, removed));
+
+        index.remove("2");
+
+        assertThat(match("src/App.java")).containsExactly(kept);
+    }
+
+    private Set<GitHubFileWatch> match(String path) {
+        return index.match("octo", "hello", MAIN, List.of(path));
+    }
+
+    private static GitHubFileWatch watch(String id, String path) {
+        return GitHubFileWatch.builder()
+                .id(id)
+                .owner("octo")
+                .repo("hello")
+                .branch("main")
+                .path(path)
+                .build();
+    }
+}
@@ -0,0 +1,47 @@
+package com.apitest.apitest.github.polling;
+
+import com.apitest.apitest.github.model.entity.GitHubFileWatch;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GitHubFileWatchShardKeyCallbackTests {
+
+    private GitHubFileWatchShardKeyCallback callback;
+
+    @BeforeEach
+    void setUp() {
+        callback = new GitHubFileWatchShardKeyCallback();
+        ReflectionTestUtils.setField(callback, "buckets", 16);
+    }
+
+    @Test
+    void fillsInTheShardKeyAndItsBucket() {
+        GitHubFileWatch watch = GitHubFileWatch.builder()
+                .userId("u1").owner("octo").repo("hello").branch("main").path("README.md")
+                .build();
+
+        GitHubFileWatch converted = Mono.from(callback.onBeforeConvert(watch, "github_file_watches")).block();
+
+        assertThat(converted.getShardKey()).isEqualTo(GitHubFileWatch.shardKeyOf(watch)).isNotNegative();
+        assertThat(converted.getBucket()).isEqualTo(converted.getShardKey() % 16);
+    }
+
+    @Test
+    void keepsAnExistingShardKeyButRecomputesAStaleBucket() {
+        GitHubFileWatch watch = GitHubFileWatch.builder().shardKey(37).bucket(5).build();
+
+        GitHubFileWatch converted = Mono.from(callback.onBeforeConvert(watch, "github_file_watches")).block();
+
+        assertThat(converted.getShardKey()).isEqualTo(37);
+        assertThat(converted.getBucket()).isEqualTo(5);
+
+        ReflectionTestUtils.setField(callback, "buckets", 8);
+        converted = Mono.from(callback.onBeforeConvert(watch, "github_file_watches")).block();
+
+        assertThat(converted.getBucket()).isEqualTo(37 % 8);
+    }
+}
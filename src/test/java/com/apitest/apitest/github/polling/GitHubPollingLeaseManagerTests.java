@@ -0,0 +1,108 @@
+package com.apitest.apitest.github.polling;
+
+import com.apitest.apitest.github.model.entity.GitHubPollingLease;
+import com.apitest.apitest.github.model.entity.GitHubPollingNode;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class GitHubPollingLeaseManagerTests {
+
+    private final ReactiveMongoTemplate mongoTemplate = mock(ReactiveMongoTemplate.class);
+    private GitHubPollingLeaseManager manager;
+    private String instanceId;
+
+    @BeforeEach
+    void setUp() {
+        manager = new GitHubPollingLeaseManager(mongoTemplate, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(manager, "enabled", true);
+        ReflectionTestUtils.setField(manager, "buckets", 2);
+        ReflectionTestUtils.setField(manager, "leaseMs", 30000L);
+        instanceId = (String) ReflectionTestUtils.getField(manager, "instanceId");
+        when(mongoTemplate.save(any(GitHubPollingNode.class))).thenAnswer(call -> Mono.just(call.getArgument(0)));
+        when(mongoTemplate.updateMulti(any(Query.class), any(UpdateDefinition.class), eq(GitHubPollingLease.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+        when(mongoTemplate.count(any(Query.class), eq(GitHubPollingNode.class))).thenReturn(Mono.just(1L));
+        // Every other bucket is held by a live lease elsewhere
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(GitHubPollingLease.class))).thenReturn(Mono.empty());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<Integer> owned() {
+        return (Set<Integer>) ReflectionTestUtils.getField(manager, "owned");
+    }
+
+    /**
+     * Answer lease lookups like Mongo would for the owner / expiresAt filters the manager uses.
+     */
+    private void leases(GitHubPollingLease... leases) {
+        when(mongoTemplate.find(any(Query.class), eq(GitHubPollingLease.class))).thenAnswer(call -> {
+            Document filter = call.getArgument(0, Query.class).getQueryObject();
+            Document expiresAt = filter.get("expiresAt", Document.class);
+            Instant after = expiresAt != null ? (Instant) expiresAt.get("$gt") : null;
+            return Flux.fromIterable(List.of(leases))
+                    .filter(lease -> filter.get("owner") == null || filter.get("owner").equals(lease.getOwner()))
+                    .filter(lease -> after == null || lease.getExpiresAt().isAfter(after));
+        });
+    }
+
+    @Test
+    void releasedOrExpiredLeasesAreNotReadopted() {
+        owned().add(0);
+        leases(new GitHubPollingLease(0, instanceId, Instant.now().plusSeconds(30), Instant.now()),
+                new GitHubPollingLease(1, instanceId, Instant.EPOCH, Instant.now()));
+
+        manager.heartbeat();
+
+        assertThat(manager.ownedBuckets()).containsExactly(0);
+    }
+
+    @Test
+    void liveLeasesStillHeldInMongoAreAdopted() {
+        leases(new GitHubPollingLease(1, instanceId, Instant.now().plusSeconds(30), Instant.now()));
+
+        manager.heartbeat();
+
+        assertThat(manager.ownedBuckets()).containsExactly(1);
+    }
+
+    @Test
+    void releaseDropsTheOwnerAsWellAsExpiringTheLease() {
+        owned().add(1);
+        when(mongoTemplate.remove(any(Query.class), eq(GitHubPollingNode.class)))
+                .thenReturn(Mono.just(DeleteResult.acknowledged(1)));
+
+        manager.shutdown();
+
+        ArgumentCaptor<UpdateDefinition> update = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplate).updateMulti(any(Query.class), update.capture(), eq(GitHubPollingLease.class));
+        Document release = update.getValue().getUpdateObject();
+        assertThat(release.get("$set", Document.class).get("expiresAt")).isEqualTo(Instant.EPOCH);
+        assertThat(release.get("$unset", Document.class)).containsKey("owner");
+        assertThat(manager.ownedBuckets()).isEmpty();
+    }
+}
@@ -0,0 +1,63 @@
+package com.apitest.apitest.github.ratelimit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GitHubRateLimitGovernorTests {
+
+    private SimpleMeterRegistry meterRegistry;
+    private GitHubRateLimitGovernor governor;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        governor = new GitHubRateLimitGovernor(meterRegistry, 2);
+        ReflectionTestUtils.setField(governor, "reserve", 50L);
+        ReflectionTestUtils.setField(governor, "maxWaitMs", 5000L);
+        ReflectionTestUtils.setField(governor, "secondaryBackoffMs", 60000L);
+    }
+
+    @Test
+    void backsOffOnTooManyRequestsWithoutRetryAfter() {
+        governor.record("t", GitHubRateLimitGovernor.CORE, new HttpHeaders(), HttpStatus.TOO_MANY_REQUESTS);
+
+        assertThat(governor.isThrottled("t", GitHubRateLimitGovernor.CORE)).isTrue();
+        assertThat(governor.isThrottled("t", GitHubRateLimitGovernor.GRAPHQL)).isFalse();
+    }
+
+    @Test
+    void backsOffOnForbiddenOnlyWhenItIsASecondaryLimit() {
+        governor.record("t", GitHubRateLimitGovernor.CORE, new HttpHeaders(), HttpStatus.FORBIDDEN, false);
+        assertThat(governor.isThrottled("t", GitHubRateLimitGovernor.CORE)).isFalse();
+
+        governor.record("t", GitHubRateLimitGovernor.CORE, new HttpHeaders(), HttpStatus.FORBIDDEN, true);
+        assertThat(governor.isThrottled("t", GitHubRateLimitGovernor.CORE)).isTrue();
+    }
+
+    @Test
+    void recognisesSecondaryLimitMessages() {
+        assertThat(GitHubRateLimitGovernor.isSecondaryLimitMessage(
+                "{\"message\":\"You have exceeded a secondary rate limit. Please wait a few minutes.\"}")).isTrue();
+        assertThat(GitHubRateLimitGovernor.isSecondaryLimitMessage(
+                "{\"message\":\"Resource not accessible by integration\"}")).isFalse();
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedTokensWithTheirGauges() {
+        governor.isThrottled("a", GitHubRateLimitGovernor.CORE);
+        governor.isThrottled("b", GitHubRateLimitGovernor.CORE);
+        governor.isThrottled("a", GitHubRateLimitGovernor.CORE);
+        governor.isThrottled("c", GitHubRateLimitGovernor.CORE);
+
+        assertThat(meterRegistry.find("github.ratelimit.remaining").gauges()).hasSize(2);
+        assertThat(meterRegistry.find("github.ratelimit.remaining")
+                .tag("token", GitHubRateLimitGovernor.fingerprint("b")).gauge()).isNull();
+        assertThat(meterRegistry.find("github.ratelimit.limit").gauges()).hasSize(2);
+    }
+}
@@ -0,0 +1,112 @@
+package com.apitest.apitest.github.service.impl;
+
+import com.apitest.apitest.github.model.entity.GitHubWebhookDelivery;
+import com.apitest.apitest.github.repository.GitHubWebhookDeliveryRepository;
+import com.apitest.apitest.github.service.GitHubWebhookService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class GitHubWebhookQueueServiceImplTests {
+
+    private final ReactiveMongoTemplate mongoTemplate = mock(ReactiveMongoTemplate.class);
+    private final GitHubWebhookDeliveryRepository repository = mock(GitHubWebhookDeliveryRepository.class);
+    private final GitHubWebhookService webhookService = mock(GitHubWebhookService.class);
+    private GitHubWebhookQueueServiceImpl queue;
+
+    @BeforeEach
+    void setUp() {
+        queue = new GitHubWebhookQueueServiceImpl(repository, mongoTemplate, webhookService, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(queue, "batchSize", 100);
+        ReflectionTestUtils.setField(queue, "workers", 4);
+        ReflectionTestUtils.setField(queue, "leaseMs", 60000L);
+        ReflectionTestUtils.setField(queue, "maxAttempts", 5);
+        ReflectionTestUtils.setField(queue, "backoffInitialMs", 2000L);
+        ReflectionTestUtils.setField(queue, "backoffMaxMs", 300000L);
+        when(repository.save(any(GitHubWebhookDelivery.class))).thenAnswer(call -> Mono.just(call.getArgument(0)));
+    }
+
+    private void claims(GitHubWebhookDelivery... deliveries) {
+        var stubbing = when(mongoTemplate.findAndModify(any(Query.class), any(Update.class),
+                any(FindAndModifyOptions.class), eq(GitHubWebhookDelivery.class)));
+        for (GitHubWebhookDelivery delivery : deliveries) {
+            stubbing = stubbing.thenReturn(Mono.just(delivery));
+        }
+        stubbing.thenReturn(Mono.empty());
+    }
+
+    private static GitHubWebhookDelivery delivery(String id, String event) {
+        return GitHubWebhookDelivery.builder()
+                .deliveryId(id)
+                .event(event)
+                .status(GitHubWebhookDelivery.Status.PROCESSING)
+                .attempts(1)
+                .build();
+    }
+
+    @Test
+    void idleQueueCostsOneClaimPerDrain() {
+        claims();
+
+        assertThat(queue.drain().block()).isZero();
+
+        verify(mongoTemplate, times(1)).findAndModify(any(Query.class), any(Update.class),
+                any(FindAndModifyOptions.class), eq(GitHubWebhookDelivery.class));
+    }
+
+    @Test
+    void stopsClaimingAtTheFirstEmptyClaim() {
+        claims(delivery("a", "ping"), delivery("b", "ping"));
+
+        assertThat(queue.drain().block()).isEqualTo(2);
+
+        verify(mongoTemplate, times(3)).findAndModify(any(Query.class), any(Update.class),
+                any(FindAndModifyOptions.class), eq(GitHubWebhookDelivery.class));
+    }
+
+    @Test
+    void failedDeliveryIsRescheduledWithBackoff() throws IOException {
+        claims(delivery("a", "push"));
+        when(webhookService.parsePush(any())).thenThrow(new IOException("malformed"));
+        Instant before = Instant.now();
+
+        queue.drain().block();
+
+        ArgumentCaptor<GitHubWebhookDelivery> saved = ArgumentCaptor.forClass(GitHubWebhookDelivery.class);
+        verify(repository).save(saved.capture());
+        assertThat(saved.getValue().getStatus()).isEqualTo(GitHubWebhookDelivery.Status.PENDING);
+        assertThat(saved.getValue().getLastError()).isEqualTo("malformed");
+        assertThat(saved.getValue().getNextAttemptAt()).isAfterOrEqualTo(before.plusMillis(2000));
+    }
+
+    @Test
+    void deliveryIsGivenUpAfterTheLastAttempt() throws IOException {
+        GitHubWebhookDelivery last = delivery("a", "push");
+        last.setAttempts(5);
+        claims(last);
+        when(webhookService.parsePush(any())).thenThrow(new IOException("malformed"));
+
+        queue.drain().block();
+
+        verify(repository).save(last);
+        assertThat(last.getStatus()).isEqualTo(GitHubWebhookDelivery.Status.FAILED);
+    }
+}
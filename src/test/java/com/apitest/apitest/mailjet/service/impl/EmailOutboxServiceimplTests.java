@@ -0,0 +1,145 @@
+package com.apitest.apitest.mailjet.service.impl;
+
+import com.apitest.apitest.mailjet.model.dto.EmailResponseDTO;
+import com.apitest.apitest.mailjet.model.entity.EmailOutboxMessage;
+import com.apitest.apitest.mailjet.repository.EmailOutboxRepository;
+import com.apitest.apitest.mailjet.service.MailjetService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EmailOutboxServiceimplTests {
+
+    private final ReactiveMongoTemplate mongoTemplate = mock(ReactiveMongoTemplate.class);
+    private final EmailOutboxRepository repository = mock(EmailOutboxRepository.class);
+    private final MailjetService mailjetService = mock(MailjetService.class);
+    private EmailOutboxServiceimpl outbox;
+
+    @BeforeEach
+    void setUp() {
+        outbox = new EmailOutboxServiceimpl(repository, mongoTemplate, mailjetService, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(outbox, "batchSize", 200);
+        ReflectionTestUtils.setField(outbox, "workers", 4);
+        ReflectionTestUtils.setField(outbox, "leaseMs", 120000L);
+        ReflectionTestUtils.setField(outbox, "maxAttempts", 8);
+        ReflectionTestUtils.setField(outbox, "backoffInitialMs", 2000L);
+        ReflectionTestUtils.setField(outbox, "backoffMaxMs", 600000L);
+        when(repository.save(any(EmailOutboxMessage.class))).thenAnswer(call -> Mono.just(call.getArgument(0)));
+    }
+
+    private void claims(EmailOutboxMessage... messages) {
+        var stubbing = when(mongoTemplate.findAndModify(any(Query.class), any(Update.class),
+                any(FindAndModifyOptions.class), eq(EmailOutboxMessage.class)));
+        for (EmailOutboxMessage message : messages) {
+            stubbing = stubbing.thenReturn(Mono.just(message));
+        }
+        stubbing.thenReturn(Mono.empty());
+    }
+
+    private void mailjetReturns(EmailResponseDTO... results) {
+        when(mailjetService.sendBulkAsync(anyList())).thenReturn(CompletableFuture.completedFuture(List.of(results)));
+    }
+
+    private static EmailOutboxMessage message(String key) {
+        return EmailOutboxMessage.builder()
+                .idempotencyKey(key)
+                .to(key + "@example.com")
+                .subject("Hello")
+                .body("Hi")
+                .status(EmailOutboxMessage.Status.SENDING)
+                .attempts(1)
+                .build();
+    }
+
+    @Test
+    void idleOutboxCostsOneClaimPerDrain() {
+        claims();
+
+        assertThat(outbox.drain().block()).isZero();
+
+        verify(mongoTemplate, times(1)).findAndModify(any(Query.class), any(Update.class),
+                any(FindAndModifyOptions.class), eq(EmailOutboxMessage.class));
+        verify(mailjetService, never()).sendBulkAsync(anyList());
+    }
+
+    @Test
+    void stopsClaimingAtTheFirstEmptyClaim() {
+        EmailOutboxMessage a = message("a");
+        EmailOutboxMessage b = message("b");
+        claims(a, b);
+        mailjetReturns(EmailResponseDTO.success("1"), EmailResponseDTO.success("2"));
+
+        assertThat(outbox.drain().block()).isEqualTo(2);
+
+        verify(mongoTemplate, times(3)).findAndModify(any(Query.class), any(Update.class),
+                any(FindAndModifyOptions.class), eq(EmailOutboxMessage.class));
+        assertThat(a.getStatus()).isEqualTo(EmailOutboxMessage.Status.SENT);
+        assertThat(b.getMessageId()).isEqualTo("2");
+    }
+
+    @Test
+    void transientErrorIsRescheduledWithBackoff() {
+        EmailOutboxMessage message = message("a");
+        claims(message);
+        mailjetReturns(EmailResponseDTO.error("Mailjet API error: timeout"));
+        Instant before = Instant.now();
+
+        outbox.drain().block();
+
+        assertThat(message.getStatus()).isEqualTo(EmailOutboxMessage.Status.PENDING);
+        assertThat(message.getNextAttemptAt()).isAfterOrEqualTo(before.plusMillis(2000));
+    }
+
+    @Test
+    void permanentErrorIsDeadLetteredOnTheFirstAttempt() {
+        EmailOutboxMessage message = message("a");
+        claims(message);
+        mailjetReturns(EmailResponseDTO.permanentError("Template error: unknown template"));
+
+        outbox.drain().block();
+
+        assertThat(message.getStatus()).isEqualTo(EmailOutboxMessage.Status.DEAD_LETTER);
+        assertThat(message.getLastError()).isEqualTo("Template error: unknown template");
+    }
+
+    @Test
+    void transientErrorIsDeadLetteredAfterTheLastAttempt() {
+        EmailOutboxMessage message = message("a");
+        message.setAttempts(8);
+        claims(message);
+        mailjetReturns(EmailResponseDTO.error("Mailjet API error: timeout"));
+
+        outbox.drain().block();
+
+        assertThat(message.getStatus()).isEqualTo(EmailOutboxMessage.Status.DEAD_LETTER);
+    }
+
+    @Test
+    void onlyMessageLevelValidationErrorsArePermanent() {
+        assertThat(MailjetServiceimpl.isPermanent(400)).isTrue();
+        assertThat(MailjetServiceimpl.isPermanent(404)).isTrue();
+        assertThat(MailjetServiceimpl.isPermanent(401)).isFalse();
+        assertThat(MailjetServiceimpl.isPermanent(429)).isFalse();
+        assertThat(MailjetServiceimpl.isPermanent(500)).isFalse();
+    }
+}
@@ -0,0 +1,86 @@
+package com.apitest.apitest.mailjet.template;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-recipient render cost of a compiled template compared with the string concatenation and
+ * replace() chain it replaces. Run with the test classpath:
+ * {@code java -cp <test-classpath> com.apitest.apitest.mailjet.template.CompiledTemplateBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompiledTemplateBenchmark {
+
+    private static final String SOURCE = """
+            <html><body style='font-family: Arial, sans-serif; line-height: 1.6;'>
+            <h1>Hello {{firstName}} {{lastName}},</h1>
+            <p>Your order <strong>{{orderId}}</strong> of {{total}} has shipped to {{city}}.</p>
+            <p>{{{bodyHtml}}}</p>
+            <p>Questions? Reply to this email or visit <a href='{{{supportUrl}}}'>our help center</a>.</p>
+            </body></html>
+            """;
+
+    private CompiledTemplate template;
+    private Map<String, Object> variables;
+    private StringBuilder buffer;
+
+    @Setup
+    public void setUp() {
+        template = CompiledTemplate.compile("order", SOURCE);
+        variables = new HashMap<>();
+        variables.put("firstName", "Ada");
+        variables.put("lastName", "O'Neil & Sons");
+        variables.put("orderId", "A-1029384");
+        variables.put("total", "$42.00");
+        variables.put("city", "Lisbon");
+        variables.put("bodyHtml", "Thanks for shopping with us.<br>See you soon!");
+        variables.put("supportUrl", "https://example.com/help");
+        buffer = new StringBuilder(template.sizeHint());
+    }
+
+    @Benchmark
+    public String compiledIntoReusedBuffer() {
+        buffer.setLength(0);
+        template.render(variables, buffer);
+        return buffer.toString();
+    }
+
+    @Benchmark
+    public String replaceChain() {
+        String out = SOURCE;
+        for (Map.Entry<String, Object> entry : variables.entrySet()) {
+            out = out.replace("{{{" + entry.getKey() + "}}}", entry.getValue().toString())
+                    .replace("{{" + entry.getKey() + "}}", entry.getValue().toString());
+        }
+        return out;
+    }
+
+    @Benchmark
+    public CompiledTemplate compile() {
+        return CompiledTemplate.compile("order", SOURCE);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CompiledTemplateBenchmark.class.getSimpleName()).build()).run();
+    }
+}
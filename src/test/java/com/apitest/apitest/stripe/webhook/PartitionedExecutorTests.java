@@ -0,0 +1,119 @@
+package com.apitest.apitest.stripe.webhook;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PartitionedExecutorTests {
+
+    private static PartitionedExecutor executor(int lanes, int capacity) {
+        return new PartitionedExecutor("test", lanes, capacity, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void laneOfIsStableAndInRange() {
+        PartitionedExecutor executor = executor(8, 10);
+
+        for (int i = 0; i < 10_000; i++) {
+            String key = "cus_" + i;
+            assertThat(executor.laneOf(key)).isBetween(0, 7).isEqualTo(executor.laneOf(key));
+        }
+        assertThat(executor.laneOf(null)).isZero();
+    }
+
+    @Test
+    void keysSharingAPrefixSpreadOverEveryLane() {
+        PartitionedExecutor executor = executor(8, 10);
+
+        Set<Integer> used = new HashSet<>();
+        for (int i = 0; i < 200; i++) {
+            used.add(executor.laneOf("cus_NffrFeUfNV2H" + i));
+        }
+
+        assertThat(used).hasSize(8);
+    }
+
+    @Test
+    void tasksForOneKeyRunOneAtATimeInSubmissionOrder() throws InterruptedException {
+        PartitionedExecutor executor = executor(4, 1000);
+        Map<String, List<Integer>> seen = new ConcurrentHashMap<>();
+        Map<String, AtomicInteger> running = new ConcurrentHashMap<>();
+        AtomicInteger overlaps = new AtomicInteger();
+
+        for (int i = 0; i < 500; i++) {
+            String key = "cus_" + (i % 10);
+            int sequence = i;
+            seen.computeIfAbsent(key, k -> new ArrayList<>());
+            running.computeIfAbsent(key, k -> new AtomicInteger());
+            executor.execute(key, () -> {
+                if (running.get(key).incrementAndGet() > 1) {
+                    overlaps.incrementAndGet();
+                }
+                seen.get(key).add(sequence);
+                running.get(key).decrementAndGet();
+            });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(overlaps).hasValue(0);
+        assertThat(seen).hasSize(10).allSatisfy((key, sequences) ->
+                assertThat(sequences).hasSize(50).isSorted());
+    }
+
+    @Test
+    void fullLaneRejectsWhileOtherLanesStillAccept() throws InterruptedException {
+        PartitionedExecutor executor = executor(2, 1);
+        String busy = keyOnLane(executor, 0);
+        String idle = keyOnLane(executor, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+
+        executor.execute(busy, () -> {
+            started.countDown();
+            awaitQuietly(release);
+        });
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        executor.execute(busy, () -> { });
+
+        assertThat(executor.queued()).isEqualTo(1);
+        assertThat(executor.maxRemainingCapacity()).isEqualTo(1);
+        assertThatThrownBy(() -> executor.execute(busy, () -> { })).isInstanceOf(RejectedExecutionException.class);
+        executor.execute(idle, () -> { });
+
+        release.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+        assertThatThrownBy(() -> executor.execute(idle, () -> { })).isInstanceOf(RejectedExecutionException.class);
+    }
+
+    private static String keyOnLane(PartitionedExecutor executor, int lane) {
+        for (int i = 0; ; i++) {
+            String key = "cus_" + i;
+            if (executor.laneOf(key) == lane) {
+                return key;
+            }
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
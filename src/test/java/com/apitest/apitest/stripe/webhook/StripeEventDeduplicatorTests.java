@@ -0,0 +1,87 @@
+package com.apitest.apitest.stripe.webhook;
+
+import com.apitest.apitest.stripe.model.entity.StripeWebhookEvent;
+import com.apitest.apitest.stripe.repository.StripeWebhookEventRepository;
+import com.stripe.model.Event;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StripeEventDeduplicatorTests {
+
+    private final StripeWebhookEventRepository repository = mock(StripeWebhookEventRepository.class);
+    private StripeEventDeduplicator deduplicator;
+
+    @BeforeEach
+    void setUp() {
+        deduplicator = new StripeEventDeduplicator(repository, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(deduplicator, "memorySize", 2);
+        ReflectionTestUtils.setField(deduplicator, "insertTimeoutMs", 1000L);
+        ReflectionTestUtils.setField(deduplicator, "recoveryDelayMs", 600000L);
+        deduplicator.init();
+        when(repository.insert(any(StripeWebhookEvent.class))).thenAnswer(call -> Mono.just(call.getArgument(0)));
+    }
+
+    @Test
+    void firstDeliveryIsStoredAndDueOnlyAfterTheRecoveryDelay() {
+        assertThat(deduplicator.register(event("evt_1"), "{}", "cus_1")).isEqualTo(StripeEventDeduplicator.Outcome.NEW);
+
+        ArgumentCaptor<StripeWebhookEvent> stored = ArgumentCaptor.forClass(StripeWebhookEvent.class);
+        verify(repository).insert(stored.capture());
+        StripeWebhookEvent record = stored.getValue();
+        assertThat(record.getStatus()).isEqualTo(StripeWebhookEvent.Status.RECEIVED);
+        assertThat(record.getPartitionKey()).isEqualTo("cus_1");
+        assertThat(Duration.between(record.getReceivedAt(), record.getNextAttemptAt())).isEqualTo(Duration.ofMinutes(10));
+    }
+
+    @Test
+    void recentRedeliveryIsAnsweredFromMemory() {
+        deduplicator.register(event("evt_1"), "{}", "cus_1");
+
+        assertThat(deduplicator.register(event("evt_1"), "{}", "cus_1")).isEqualTo(StripeEventDeduplicator.Outcome.DUPLICATE);
+        verify(repository, times(1)).insert(any(StripeWebhookEvent.class));
+    }
+
+    @Test
+    void redeliveryForgottenByMemoryIsCaughtByTheUniqueId() {
+        deduplicator.register(event("evt_1"), "{}", "cus_1");
+        deduplicator.register(event("evt_2"), "{}", "cus_1");
+        deduplicator.register(event("evt_3"), "{}", "cus_1");
+        when(repository.insert(any(StripeWebhookEvent.class))).thenReturn(Mono.error(new DuplicateKeyException("E11000")));
+
+        assertThat(deduplicator.register(event("evt_1"), "{}", "cus_1")).isEqualTo(StripeEventDeduplicator.Outcome.DUPLICATE);
+    }
+
+    @Test
+    void failedInsertIsNotRememberedSoTheRetryIsProcessed() {
+        when(repository.insert(any(StripeWebhookEvent.class)))
+                .thenReturn(Mono.error(new DataAccessResourceFailureException("down")))
+                .thenAnswer(call -> Mono.just(call.getArgument(0)));
+
+        assertThatThrownBy(() -> deduplicator.register(event("evt_1"), "{}", "cus_1"))
+                .isInstanceOf(DataAccessResourceFailureException.class);
+        assertThat(deduplicator.register(event("evt_1"), "{}", "cus_1")).isEqualTo(StripeEventDeduplicator.Outcome.NEW);
+    }
+
+    private static Event event(String id) {
+        Event event = new Event();
+        event.setId(id);
+        event.setType("customer.created");
+        return event;
+    }
+}
@@ -0,0 +1,156 @@
+package com.apitest.apitest.stripe.webhook;
+
+import com.apitest.apitest.stripe.model.entity.StripeWebhookEvent;
+import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StripeEventDispatcherTests {
+
+    private static final String PAYLOAD = "{\"id\":\"evt_1\",\"object\":\"event\",\"type\":\"customer.created\"}";
+
+    private final ReactiveMongoTemplate mongoTemplate = mock(ReactiveMongoTemplate.class);
+    private StripeEventDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        dispatcher = new StripeEventDispatcher(mongoTemplate, new StripeEventHandlerRegistry(List.of()),
+                new SimpleMeterRegistry(), 2, 10);
+        ReflectionTestUtils.setField(dispatcher, "leaseMs", 300000L);
+        ReflectionTestUtils.setField(dispatcher, "maxAttempts", 10);
+        ReflectionTestUtils.setField(dispatcher, "recoveryBatchSize", 100);
+        ReflectionTestUtils.setField(dispatcher, "recoveryDelayMs", 600000L);
+        ReflectionTestUtils.setField(dispatcher, "holdDelayMs", 10000L);
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(StripeWebhookEvent.class))).thenReturn(Mono.empty());
+    }
+
+    private void due(StripeWebhookEvent record, long modified) {
+        when(mongoTemplate.find(any(Query.class), eq(StripeWebhookEvent.class))).thenReturn(Flux.just(record));
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(StripeWebhookEvent.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(modified, modified, null)));
+    }
+
+    private static StripeWebhookEvent record(StripeWebhookEvent.Status status) {
+        return StripeWebhookEvent.builder()
+                .eventId("evt_1")
+                .type("customer.created")
+                .payload(PAYLOAD)
+                .status(status)
+                .build();
+    }
+
+    @Test
+    void resubmittedEventIsPushedOutSoTheNextSweepSkipsIt() throws InterruptedException {
+        due(record(StripeWebhookEvent.Status.RECEIVED), 1);
+        Instant before = Instant.now();
+
+        dispatcher.recover();
+        dispatcher.shutdown();
+
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), update.capture(), eq(StripeWebhookEvent.class));
+        Instant nextAttemptAt = (Instant) update.getValue().getUpdateObject().get("$set", Document.class)
+                .get("nextAttemptAt");
+        assertThat(nextAttemptAt).isAfterOrEqualTo(before.plusMillis(600000));
+        // The lane worker tried to lease it
+        verify(mongoTemplate).findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(StripeWebhookEvent.class));
+    }
+
+    @Test
+    void eventWithAnExpiredLeaseGoesBackToFailed() throws InterruptedException {
+        due(record(StripeWebhookEvent.Status.PROCESSING), 1);
+
+        dispatcher.recover();
+        dispatcher.shutdown();
+
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), update.capture(), eq(StripeWebhookEvent.class));
+        assertThat(update.getValue().getUpdateObject().get("$set", Document.class).get("status"))
+                .isEqualTo(StripeWebhookEvent.Status.FAILED);
+    }
+
+    @Test
+    void eventRequeuedByAnotherInstanceIsNotSubmittedTwice() throws InterruptedException {
+        due(record(StripeWebhookEvent.Status.RECEIVED), 0);
+
+        dispatcher.recover();
+        dispatcher.shutdown();
+
+        verify(mongoTemplate, never()).findAndModify(any(Query.class), any(Update.class),
+                any(FindAndModifyOptions.class), eq(StripeWebhookEvent.class));
+    }
+
+    private void claimed(StripeWebhookEvent record, boolean earlierPending) {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(StripeWebhookEvent.class))).thenReturn(Mono.just(record));
+        when(mongoTemplate.exists(any(Query.class), eq(StripeWebhookEvent.class))).thenReturn(Mono.just(earlierPending));
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(StripeWebhookEvent.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+    }
+
+    private static StripeWebhookEvent claimedRecord() {
+        StripeWebhookEvent record = record(StripeWebhookEvent.Status.PROCESSING);
+        record.setPartitionKey("cus_1");
+        record.setReceivedAt(Instant.now());
+        record.setAttempts(1);
+        return record;
+    }
+
+    @Test
+    void eventIsHeldWhileAnEarlierEventForItsKeyIsPending() throws InterruptedException {
+        claimed(claimedRecord(), true);
+        AtomicInteger runs = new AtomicInteger();
+        Instant before = Instant.now();
+
+        dispatcher.submit(new StripeEventRoute("evt_1", "customer.updated", "cus_1", runs::incrementAndGet));
+        dispatcher.shutdown();
+
+        assertThat(runs).hasValue(0);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), update.capture(), eq(StripeWebhookEvent.class));
+        Document held = update.getValue().getUpdateObject();
+        assertThat(held.get("$set", Document.class).get("status")).isEqualTo(StripeWebhookEvent.Status.RECEIVED);
+        assertThat((Instant) held.get("$set", Document.class).get("nextAttemptAt")).isAfterOrEqualTo(before.plusMillis(10000));
+        // The hold does not use up a retry
+        assertThat(held.get("$inc", Document.class).get("attempts")).isEqualTo(-1);
+    }
+
+    @Test
+    void eventRunsWhenNothingEarlierForItsKeyIsPending() throws InterruptedException {
+        claimed(claimedRecord(), false);
+        AtomicInteger runs = new AtomicInteger();
+
+        dispatcher.submit(new StripeEventRoute("evt_1", "customer.updated", "cus_1", runs::incrementAndGet));
+        dispatcher.shutdown();
+
+        assertThat(runs).hasValue(1);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), update.capture(), eq(StripeWebhookEvent.class));
+        assertThat(update.getValue().getUpdateObject().get("$set", Document.class).get("status"))
+                .isEqualTo(StripeWebhookEvent.Status.PROCESSED);
+    }
+}
@@ -0,0 +1,84 @@
+package com.apitest.apitest.twilio.encoding;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of planning one SMS body on the send path, with a charset-encoder check as the naive
+ * baseline for "does this fit a single-byte alphabet". Run with the test classpath:
+ * {@code java -cp <test-classpath> com.apitest.apitest.twilio.encoding.SmsSegmentCalculatorBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SmsSegmentCalculatorBenchmark {
+
+    @Param({"gsm", "smartQuotes", "emoji"})
+    private String body;
+
+    private String message;
+    private CharsetEncoder latin1;
+
+    @Setup
+    public void setUp() {
+        String base = "Hi Ada, your order A-1029384 has shipped and will arrive on Thursday. "
+                + "Track it at https://example.com/t/A1029384 or reply STOP to opt out. ";
+        message = switch (body) {
+            case "smartQuotes" -> base + "We’re “on it” — thanks…";
+            case "emoji" -> base + "Thanks! 📦🚚";
+            default -> base + "Thanks!";
+        };
+        latin1 = Charset.forName("ISO-8859-1").newEncoder();
+    }
+
+    @Benchmark
+    public SmsSegmentInfo analyze() {
+        return SmsSegmentCalculator.analyze(message);
+    }
+
+    @Benchmark
+    public String transliterate() {
+        return SmsSegmentCalculator.transliterate(message);
+    }
+
+    @Benchmark
+    public List<String> transliterateAndSplit() {
+        String gsm = SmsSegmentCalculator.transliterate(message);
+        return SmsSegmentCalculator.split(gsm, SmsSegmentCalculator.analyze(gsm));
+    }
+
+    @Benchmark
+    public boolean charsetEncoderBaseline() {
+        return latin1.canEncode(message);
+    }
+
+    @Benchmark
+    public int utf16BytesBaseline() {
+        return message.getBytes(StandardCharsets.UTF_16BE).length;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SmsSegmentCalculatorBenchmark.class.getSimpleName()).build()).run();
+    }
+}
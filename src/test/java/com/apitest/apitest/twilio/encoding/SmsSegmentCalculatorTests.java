@@ -0,0 +1,143 @@
+package com.apitest.apitest.twilio.encoding;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SmsSegmentCalculatorTests {
+
+    private static final String EMOJI = "😀";
+
+    @Test
+    void gsmFitsOneSegmentUpTo160Septets() {
+        assertThat(SmsSegmentCalculator.analyze("a".repeat(160)))
+                .isEqualTo(new SmsSegmentInfo(SmsEncoding.GSM_7, 160, 1, 0));
+        assertThat(SmsSegmentCalculator.analyze("a".repeat(161)).segments()).isEqualTo(2);
+    }
+
+    @Test
+    void concatenatedGsmSegmentsHold153Septets() {
+        assertThat(SmsSegmentCalculator.analyze("a".repeat(306)).segments()).isEqualTo(2);
+        assertThat(SmsSegmentCalculator.analyze("a".repeat(307)).segments()).isEqualTo(3);
+    }
+
+    @Test
+    void underscoreIsABasicGsmCharacter() {
+        assertThat(SmsSegmentCalculator.septets('_')).isEqualTo(1);
+        assertThat(SmsSegmentCalculator.analyze("reset_token=abc"))
+                .isEqualTo(new SmsSegmentInfo(SmsEncoding.GSM_7, 15, 1, 0));
+        assertThat(SmsSegmentCalculator.analyze("a".repeat(150) + "_").segments()).isEqualTo(1);
+    }
+
+    @Test
+    void extensionCharactersTakeTwoSeptets() {
+        SmsSegmentInfo info = SmsSegmentCalculator.analyze("{€}");
+
+        assertThat(info.encoding()).isEqualTo(SmsEncoding.GSM_7);
+        assertThat(info.units()).isEqualTo(6);
+    }
+
+    @Test
+    void escapeSequenceIsNeverSplitAcrossSegments() {
+        // 306 septets would fit two segments, but the escape cannot straddle the first boundary
+        String text = "a".repeat(152) + "€" + "a".repeat(152);
+
+        SmsSegmentInfo info = SmsSegmentCalculator.analyze(text);
+
+        assertThat(info.units()).isEqualTo(306);
+        assertThat(info.segments()).isEqualTo(3);
+    }
+
+    @Test
+    void ucs2FitsOneSegmentUpTo70UnitsAnd67WhenConcatenated() {
+        assertThat(SmsSegmentCalculator.analyze("ж".repeat(70)))
+                .isEqualTo(new SmsSegmentInfo(SmsEncoding.UCS_2, 70, 1, 70));
+        assertThat(SmsSegmentCalculator.analyze("ж".repeat(71)).segments()).isEqualTo(2);
+        assertThat(SmsSegmentCalculator.analyze("ж".repeat(134)).segments()).isEqualTo(2);
+        assertThat(SmsSegmentCalculator.analyze("ж".repeat(135)).segments()).isEqualTo(3);
+    }
+
+    @Test
+    void oneNonGsmCharacterSwitchesTheWholeMessageToUcs2() {
+        SmsSegmentInfo info = SmsSegmentCalculator.analyze("Hello ж");
+
+        assertThat(info.encoding()).isEqualTo(SmsEncoding.UCS_2);
+        assertThat(info.units()).isEqualTo(7);
+        assertThat(info.nonGsmCharacters()).isEqualTo(1);
+    }
+
+    @Test
+    void surrogatePairIsNeverSplitAcrossSegments() {
+        String text = "ж".repeat(66) + EMOJI + "ж".repeat(66);
+
+        SmsSegmentInfo info = SmsSegmentCalculator.analyze(text);
+
+        assertThat(info.units()).isEqualTo(134);
+        assertThat(info.segments()).isEqualTo(3);
+        assertThat(info.nonGsmCharacters()).isEqualTo(133);
+    }
+
+    @Test
+    void emptyBodyHasNoSegments() {
+        assertThat(SmsSegmentCalculator.analyze("")).isEqualTo(new SmsSegmentInfo(SmsEncoding.GSM_7, 0, 0, 0));
+        assertThat(SmsSegmentCalculator.split("", SmsSegmentCalculator.analyze(""))).containsExactly("");
+    }
+
+    @Test
+    void transliterateReplacesTypographyAndAccents() {
+        assertThat(SmsSegmentCalculator.transliterate("“naïve” – fine…")).isEqualTo("\"naive\" - fine...");
+    }
+
+    @Test
+    void transliterateReturnsTheSameInstanceWhenNothingChanges() {
+        String gsm = "Plain GSM text €";
+        String emoji = "Hi " + EMOJI;
+
+        assertThat(SmsSegmentCalculator.transliterate(gsm)).isSameAs(gsm);
+        assertThat(SmsSegmentCalculator.transliterate(emoji)).isSameAs(emoji);
+    }
+
+    @Test
+    void splitProducesSingleSegmentPartsBrokenAtWhitespace() {
+        String text = "word ".repeat(100).strip();
+
+        List<String> parts = SmsSegmentCalculator.split(text, SmsSegmentCalculator.analyze(text));
+
+        assertThat(parts).hasSizeGreaterThan(1);
+        assertThat(parts).allSatisfy(part -> {
+            assertThat(SmsSegmentCalculator.analyze(part).segments()).isEqualTo(1);
+            assertThat(part).startsWith("word").endsWith("word");
+        });
+        assertThat(String.join(" ", parts)).isEqualTo(text);
+    }
+
+    @Test
+    void splitKeepsAnEscapeSequenceWhole() {
+        String text = "a".repeat(159) + "€" + "a".repeat(10);
+
+        List<String> parts = SmsSegmentCalculator.split(text, SmsSegmentCalculator.analyze(text));
+
+        assertThat(parts).containsExactly("a".repeat(159), "€" + "a".repeat(10));
+    }
+
+    @Test
+    void splitKeepsASurrogatePairWhole() {
+        String text = "ж".repeat(69) + EMOJI + "ж".repeat(5);
+
+        List<String> parts = SmsSegmentCalculator.split(text, SmsSegmentCalculator.analyze(text));
+
+        assertThat(parts).containsExactly("ж".repeat(69), EMOJI + "ж".repeat(5));
+    }
+
+    @Test
+    void splitOfAWhitespaceOnlyBodyStillReturnsOnePart() {
+        String spaces = SmsSegmentCalculator.transliterate("\u00A0".repeat(200));
+        SmsSegmentInfo info = SmsSegmentCalculator.analyze(spaces);
+        assertThat(spaces).isBlank();
+        assertThat(info.segments()).isEqualTo(2);
+
+        assertThat(SmsSegmentCalculator.split(spaces, info)).containsExactly(spaces);
+    }
+}
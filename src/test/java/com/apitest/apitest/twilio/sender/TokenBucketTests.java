@@ -0,0 +1,54 @@
+package com.apitest.apitest.twilio.sender;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class TokenBucketTests {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+    // Time passes between the calls, so waits come back slightly shorter than the exact multiples
+    private static final long SLACK = TimeUnit.MILLISECONDS.toNanos(200);
+
+    @Test
+    void burstIsAvailableImmediately() {
+        TokenBucket bucket = new TokenBucket(1.0, 3);
+
+        assertThat(bucket.reserve()).isZero();
+        assertThat(bucket.reserve()).isZero();
+        assertThat(bucket.reserve()).isZero();
+    }
+
+    @Test
+    void reservationsBeyondTheBurstQueueAtTheRefillRate() {
+        TokenBucket bucket = new TokenBucket(1.0, 1);
+
+        assertThat(bucket.reserve()).isZero();
+        assertThat(bucket.reserve()).isCloseTo(SECOND, within(SLACK));
+        assertThat(bucket.reserve()).isCloseTo(2 * SECOND, within(SLACK));
+    }
+
+    @Test
+    void multiSegmentReservationsChargeEverySegment() {
+        TokenBucket bucket = new TokenBucket(10.0, 1);
+
+        assertThat(bucket.reserve(1)).isZero();
+        assertThat(bucket.reserve(5)).isCloseTo(SECOND / 2, within(SLACK));
+    }
+
+    @Test
+    void backlogReportsTheWaitOfTheNextReservationWithoutTakingIt() {
+        TokenBucket bucket = new TokenBucket(1.0, 1);
+        assertThat(bucket.backlogNanos()).isZero();
+
+        bucket.reserve(3);
+
+        long backlog = bucket.backlogNanos();
+        assertThat(backlog).isCloseTo(3 * SECOND, within(SLACK));
+        assertThat(bucket.backlogNanos()).isLessThanOrEqualTo(backlog);
+        assertThat(bucket.reserve()).isCloseTo(3 * SECOND, within(SLACK));
+    }
+}
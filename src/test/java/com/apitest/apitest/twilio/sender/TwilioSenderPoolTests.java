@@ -0,0 +1,50 @@
+package com.apitest.apitest.twilio.sender;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TwilioSenderPoolTests {
+
+    private static TwilioSenderPool pool(String numbers, String messagingServices) {
+        TwilioSenderPool pool = new TwilioSenderPool(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(pool, "fromPhone", "");
+        ReflectionTestUtils.setField(pool, "numbers", numbers);
+        ReflectionTestUtils.setField(pool, "messagingServiceSids", messagingServices);
+        ReflectionTestUtils.setField(pool, "numberRatePerSecond", 1.0);
+        ReflectionTestUtils.setField(pool, "messagingServiceRatePerSecond", 10.0);
+        ReflectionTestUtils.setField(pool, "burst", 1);
+        ReflectionTestUtils.setField(pool, "stickyRecipients", 100);
+        pool.init();
+        return pool;
+    }
+
+    @Test
+    void drainTimeSpreadsSegmentsOverTheCombinedRate() {
+        TwilioSenderPool pool = pool("+15550000001,+15550000002", "MG1");
+
+        // 12 segments/s across two numbers and one messaging service
+        assertThat(pool.estimatedDrainTime(0)).isZero();
+        assertThat(pool.estimatedDrainTime(120)).isEqualTo(Duration.ofSeconds(10));
+    }
+
+    @Test
+    void drainTimeIncludesTheCurrentBacklog() {
+        TwilioSenderPool pool = pool("+15550000001", "");
+        // Six segments reserved on a 1/s number with a burst of one: the next one waits six seconds
+        TwilioSender sender = ReflectionTestUtils.invokeMethod(pool, "select", "+15551230000");
+        sender.bucket().reserve(6);
+
+        assertThat(pool.estimatedDrainTime(0)).isBetween(Duration.ofMillis(5500), Duration.ofSeconds(6));
+        assertThat(pool.estimatedDrainTime(60)).isBetween(Duration.ofMillis(65500), Duration.ofSeconds(66));
+    }
+
+    @Test
+    void emptyPoolHasNoEstimate() {
+        assertThat(pool("", "").estimatedDrainTime(100)).isZero();
+    }
+}
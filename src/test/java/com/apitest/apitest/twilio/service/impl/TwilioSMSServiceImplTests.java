@@ -0,0 +1,77 @@
+package com.apitest.apitest.twilio.service.impl;
+
+import com.apitest.apitest.twilio.encoding.SmsEncoding;
+import com.apitest.apitest.twilio.encoding.SmsSegmentInfo;
+import com.apitest.apitest.twilio.encoding.SmsSegmentPlan;
+import com.apitest.apitest.twilio.encoding.SmsSegmentPlanner;
+import com.apitest.apitest.twilio.model.dto.SmsSendRequest;
+import com.apitest.apitest.twilio.model.dto.SmsSendResponse;
+import com.apitest.apitest.twilio.sender.TwilioSenderPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TwilioSMSServiceImplTests {
+
+    private final TwilioSenderPool senderPool = mock(TwilioSenderPool.class);
+    private final SmsSegmentPlanner planner = mock(SmsSegmentPlanner.class);
+    private TwilioSMSServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        service = new TwilioSMSServiceImpl(senderPool, planner);
+        ReflectionTestUtils.setField(service, "accountSid", "AC00000000000000000000000000000000");
+        ReflectionTestUtils.setField(service, "authToken", "token");
+        ReflectionTestUtils.setField(service, "fromPhone", "+15550000000");
+        ReflectionTestUtils.setField(service, "maxConcurrency", 4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void oneUnexpectedExceptionDoesNotFailTheWholeBulk() {
+        SmsSegmentPlan tooLong = new SmsSegmentPlan(List.of("x"), new SmsSegmentInfo(SmsEncoding.GSM_7, 2000, 14, 0), false);
+        when(planner.plan(eq("boom"), any(), any())).thenThrow(new IllegalStateException("planner exploded"));
+        when(planner.plan(eq("long"), any(), any())).thenReturn(tooLong);
+        when(planner.exceedsLimit(tooLong)).thenReturn(true);
+        when(planner.maxSegments()).thenReturn(10);
+
+        List<SmsSendResponse> responses = service.sendBulkAsync(List.of(
+                SmsSendRequest.builder().to("+15550000001").message("boom").build(),
+                SmsSendRequest.builder().to("+15550000002").message("long").build())).join();
+
+        assertThat(responses).hasSize(2).allSatisfy(response -> assertThat(response.getStatus()).isEqualTo("FAILED"));
+        assertThat(responses.get(0).getTo()).isEqualTo("+15550000001");
+        assertThat(responses.get(0).getErrorMessage()).isEqualTo("planner exploded");
+        assertThat(responses.get(1).getErrorMessage()).contains("at most 10");
+    }
+
+    @Test
+    void blankBodyIsRejectedBeforeTakingASender() throws InterruptedException {
+        String spaces = " ".repeat(200);
+        SmsSegmentPlan blank = new SmsSegmentPlan(List.of(spaces), new SmsSegmentInfo(SmsEncoding.GSM_7, 200, 2, 0), true);
+        when(planner.plan(any(), any(), any())).thenReturn(blank);
+
+        SmsSendResponse response = service.sendSms(SmsSendRequest.builder()
+                .to("+15550000001").message("\u00A0".repeat(200)).transliterate(true).split(true).build());
+
+        assertThat(response.getStatus()).isEqualTo("FAILED");
+        assertThat(response.getErrorMessage()).isEqualTo("Message body is empty after transliteration");
+        verify(senderPool, never()).acquire(any(), anyInt());
+    }
+}
@@ -0,0 +1,142 @@
+package com.apitest.apitest.twilio.status;
+
+import com.apitest.apitest.twilio.model.entity.SmsDeliveryStatus;
+import com.mongodb.bulk.BulkWriteResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SmsStatusBufferTests {
+
+    @Test
+    void rankFollowsTheDeliveryLifecycle() {
+        assertThat(SmsStatusBuffer.rank("queued")).isLessThan(SmsStatusBuffer.rank("sending"));
+        assertThat(SmsStatusBuffer.rank("sending")).isLessThan(SmsStatusBuffer.rank("sent"));
+        assertThat(SmsStatusBuffer.rank("sent")).isLessThan(SmsStatusBuffer.rank("delivered"));
+        assertThat(SmsStatusBuffer.rank("delivered")).isLessThan(SmsStatusBuffer.rank("read"));
+    }
+
+    @Test
+    void terminalStatesShareTheirRank() {
+        assertThat(SmsStatusBuffer.rank("undelivered"))
+                .isEqualTo(SmsStatusBuffer.rank("delivered"))
+                .isEqualTo(SmsStatusBuffer.rank("failed"))
+                .isEqualTo(SmsStatusBuffer.rank("canceled"));
+    }
+
+    @Test
+    void rankIsCaseInsensitiveAndZeroForUnknownStatuses() {
+        assertThat(SmsStatusBuffer.rank("DELIVERED")).isEqualTo(SmsStatusBuffer.rank("delivered"));
+        assertThat(SmsStatusBuffer.rank("teleported")).isZero();
+        assertThat(SmsStatusBuffer.rank(null)).isZero();
+    }
+
+    @Test
+    void laterKeepsTheMoreAdvancedState() {
+        SmsDeliveryStatus sent = status("SM1", "sent");
+        SmsDeliveryStatus delivered = status("SM1", "delivered");
+
+        assertThat(SmsStatusBuffer.later(sent, delivered)).isSameAs(delivered);
+        assertThat(SmsStatusBuffer.later(delivered, sent)).isSameAs(delivered);
+    }
+
+    @Test
+    void laterKeepsTheFirstOfTwoTerminalStates() {
+        SmsDeliveryStatus delivered = status("SM1", "delivered");
+        SmsDeliveryStatus failed = status("SM1", "failed");
+
+        assertThat(SmsStatusBuffer.later(delivered, failed)).isSameAs(delivered);
+    }
+
+    @Test
+    void burstOfCallbacksForOneMessageIsWrittenOnce() {
+        ReactiveMongoTemplate mongoTemplate = mock(ReactiveMongoTemplate.class);
+        ReactiveBulkOperations bulk = mock(ReactiveBulkOperations.class);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, SmsDeliveryStatus.class)).thenReturn(bulk);
+        when(bulk.execute()).thenReturn(Mono.just(BulkWriteResult.acknowledged(0, 0, 0, 0, List.of(), List.of())));
+        SmsStatusBuffer buffer = new SmsStatusBuffer(mongoTemplate, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(buffer, "flushSize", 1000);
+        ReflectionTestUtils.setField(buffer, "maxBuffered", 100000);
+
+        buffer.add(status("SM1", "queued"));
+        buffer.add(status("SM1", "delivered"));
+        buffer.add(status("SM1", "sent"));
+        buffer.add(status("SM2", "sent"));
+        buffer.flush();
+
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(bulk, times(2)).upsert(any(Query.class), updates.capture());
+        assertThat(updates.getAllValues())
+                .extracting(update -> update.getUpdateObject().get("$set", Document.class).get("status"))
+                .containsExactlyInAnyOrder("delivered", "sent");
+    }
+
+    @Test
+    void eachBulkCarriesAtMostFlushSizeMessages() {
+        ReactiveMongoTemplate mongoTemplate = mock(ReactiveMongoTemplate.class);
+        ReactiveBulkOperations bulk = mock(ReactiveBulkOperations.class);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, SmsDeliveryStatus.class)).thenReturn(bulk);
+        when(bulk.execute()).thenReturn(Mono.just(BulkWriteResult.acknowledged(0, 0, 0, 0, List.of(), List.of())));
+        SmsStatusBuffer buffer = new SmsStatusBuffer(mongoTemplate, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(buffer, "flushSize", 3);
+        ReflectionTestUtils.setField(buffer, "maxBuffered", 100);
+        // Fill the buffer while a flush is in progress so it builds a backlog larger than one bulk
+        ReflectionTestUtils.setField(buffer, "flushing", new AtomicBoolean(true));
+        for (int i = 0; i < 7; i++) {
+            buffer.add(status("SM" + i, "sent"));
+        }
+        ReflectionTestUtils.setField(buffer, "flushing", new AtomicBoolean(false));
+
+        buffer.flush();
+
+        // Two full bulks back to back; the last message waits for the next scheduled flush
+        verify(mongoTemplate, times(2)).bulkOps(BulkOperations.BulkMode.UNORDERED, SmsDeliveryStatus.class);
+        verify(bulk, times(6)).upsert(any(Query.class), any(Update.class));
+
+        buffer.flush();
+
+        verify(bulk, times(7)).upsert(any(Query.class), any(Update.class));
+    }
+
+    @Test
+    void fullBufferRefusesNewMessagesButStillMergesKnownOnes() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        SmsStatusBuffer buffer = new SmsStatusBuffer(mock(ReactiveMongoTemplate.class), registry);
+        ReflectionTestUtils.setField(buffer, "flushSize", 1000);
+        ReflectionTestUtils.setField(buffer, "maxBuffered", 2);
+
+        assertThat(buffer.add(status("SM1", "sent"))).isTrue();
+        assertThat(buffer.add(status("SM2", "sent"))).isTrue();
+        assertThat(buffer.add(status("SM3", "sent"))).isFalse();
+        assertThat(buffer.add(status("SM1", "delivered"))).isTrue();
+
+        assertThat(registry.counter("twilio.status.rejected").count()).isEqualTo(1);
+        assertThat(registry.get("twilio.status.buffered").gauge().value()).isEqualTo(2);
+    }
+
+    private static SmsDeliveryStatus status(String sid, String status) {
+        return SmsDeliveryStatus.builder()
+                .sid(sid)
+                .status(status)
+                .statusRank(SmsStatusBuffer.rank(status))
+                .build();
+    }
+}
@@ -0,0 +1,40 @@
+package com.apitest.apitest.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RetryBackoffTests {
+
+    private static final Duration INITIAL = Duration.ofSeconds(2);
+    private static final Duration MAX = Duration.ofMinutes(1);
+
+    @Test
+    void doublesPerAttemptFromTheInitialDelay() {
+        assertThat(RetryBackoff.exponential(1, INITIAL, MAX)).isEqualTo(Duration.ofSeconds(2));
+        assertThat(RetryBackoff.exponential(2, INITIAL, MAX)).isEqualTo(Duration.ofSeconds(4));
+        assertThat(RetryBackoff.exponential(4, INITIAL, MAX)).isEqualTo(Duration.ofSeconds(16));
+    }
+
+    @Test
+    void isCappedAtTheMaximumEvenForHugeAttemptCounts() {
+        assertThat(RetryBackoff.exponential(6, INITIAL, MAX)).isEqualTo(MAX);
+        assertThat(RetryBackoff.exponential(Integer.MAX_VALUE, INITIAL, MAX)).isEqualTo(MAX);
+    }
+
+    @Test
+    void treatsZeroAttemptsAsTheFirst() {
+        assertThat(RetryBackoff.exponential(0, INITIAL, MAX)).isEqualTo(INITIAL);
+    }
+
+    @Test
+    void jitterStaysBetweenTheInitialDelayAndTheExponentialCeiling() {
+        for (int i = 0; i < 1000; i++) {
+            Duration delay = RetryBackoff.withJitter(3, INITIAL, MAX);
+            assertThat(delay).isBetween(INITIAL, Duration.ofSeconds(8));
+        }
+        assertThat(RetryBackoff.withJitter(1, INITIAL, MAX)).isEqualTo(INITIAL);
+    }
+}